@@ -1,5 +1,6 @@
 package com.loreJourney.animation;
 
+import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 
 /**
@@ -42,6 +43,21 @@ public class AnimationManager {
         currentAnimation = new CustomAnimation(delay, frames);
     }
 
+    /**
+     * Sets up for a single shared animation (see ResourceManager.getAnimation)
+     * Only the playback state belongs to this AnimationManager
+     *
+     * @param definition
+     */
+    public AnimationManager(Animation definition) {
+        TextureRegion[] frames = definition.getKeyFrames();
+
+        width = frames[0].getRegionWidth();
+        height = frames[0].getRegionHeight();
+
+        currentAnimation = new CustomAnimation(definition);
+    }
+
     /**
      * Sets up for animations based on world index
      * Used for storing multiple animations on a single row sorted by worlds
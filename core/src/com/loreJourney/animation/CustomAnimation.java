@@ -27,6 +27,16 @@ public class CustomAnimation extends Animation {
         super(frameDuration, keyFrames);
     }
 
+    /**
+     * Plays a shared animation, using its frames without copying them
+     *
+     * @param definition
+     */
+    public CustomAnimation(Animation definition) {
+        super(definition.getFrameDuration(), definition.getKeyFrames());
+        setPlayMode(definition.getPlayMode());
+    }
+
     public void play() {
         if (!playing) {
             playing = true;
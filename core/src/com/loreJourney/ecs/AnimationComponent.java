@@ -0,0 +1,23 @@
+package com.loreJourney.ecs;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Playback state of a shared animation definition (see ResourceManager.getAnimation)
+ *
+ * @author Ming Li
+ */
+public class AnimationComponent implements Component, Pool.Poolable {
+
+    public Animation animation;
+    public float stateTime;
+
+    @Override
+    public void reset() {
+        animation = null;
+        stateTime = 0;
+    }
+
+}
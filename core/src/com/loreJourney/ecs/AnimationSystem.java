@@ -0,0 +1,26 @@
+package com.loreJourney.ecs;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.systems.IteratingSystem;
+
+/**
+ * Advances the animations of every animated actor
+ *
+ * @author Ming Li
+ */
+public class AnimationSystem extends IteratingSystem {
+
+    private ComponentMapper<AnimationComponent> animations = ComponentMapper.getFor(AnimationComponent.class);
+
+    public AnimationSystem() {
+        super(Family.all(AnimationComponent.class).get());
+    }
+
+    @Override
+    protected void processEntity(Entity entity, float dt) {
+        animations.get(entity).stateTime += dt;
+    }
+
+}
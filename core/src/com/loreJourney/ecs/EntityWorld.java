@@ -0,0 +1,132 @@
+package com.loreJourney.ecs;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.PooledEngine;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.loreJourney.entity.enemy.EnemyPool;
+import com.loreJourney.resource.ResourceManager;
+import com.loreJourney.resource.Util;
+
+/**
+ * The actors of a TileMap stored as Ashley entities instead of Enemy objects
+ * Each actor is a set of pooled components (position, animation, stats, tile occupant)
+ * and systems iterate over packed families of those components
+ *
+ * @author Ming Li
+ */
+public class EntityWorld {
+
+    private PooledEngine engine;
+    private RenderSystem renderSystem;
+    private InteractionSystem interactionSystem;
+
+    private ResourceManager rm;
+
+    public EntityWorld(ResourceManager rm) {
+        this.rm = rm;
+
+        engine = new PooledEngine();
+        interactionSystem = new InteractionSystem();
+        renderSystem = new RenderSystem(interactionSystem, rm.shadow11x6);
+        engine.addSystem(new AnimationSystem());
+        engine.addSystem(renderSystem);
+        engine.addSystem(interactionSystem);
+    }
+
+    /**
+     * Creates an actor from a numerical Entity id
+     *
+     * @param entityID
+     * @param tile index into the tile map
+     * @param x map coordinates
+     * @param y
+     */
+    public void spawn(int entityID, int tile, float x, float y) {
+        if (!EnemyPool.isEnemy(entityID)) return;
+        Entity e = engine.createEntity();
+
+        PositionComponent position = engine.createComponent(PositionComponent.class);
+        position.x = x;
+        position.y = y;
+        e.add(position);
+
+        AnimationComponent animation = engine.createComponent(AnimationComponent.class);
+        animation.animation = rm.getAnimation(rm.sprites16x16, EnemyPool.WORLD_INDICES[entityID],
+            EnemyPool.START_INDICES[entityID], EnemyPool.NUM_FRAMES, EnemyPool.DELAY);
+        e.add(animation);
+
+        StatsComponent stats = engine.createComponent(StatsComponent.class);
+        stats.bossId = EnemyPool.BOSS_IDS[entityID];
+        stats.elite = stats.bossId == -1 && Util.isSuccess(Util.ELITE_CHANCE);
+        stats.name = stats.elite ? "[ELITE] " + EnemyPool.NAMES[entityID] : EnemyPool.NAMES[entityID];
+        e.add(stats);
+
+        TileOccupantComponent occupant = engine.createComponent(TileOccupantComponent.class);
+        occupant.tile = tile;
+        occupant.entityID = entityID;
+        e.add(occupant);
+
+        engine.addEntity(e);
+    }
+
+    public boolean isOccupied(int tile) {
+        return interactionSystem.isOccupied(tile);
+    }
+
+    public Entity getOccupant(int tile) {
+        return interactionSystem.getOccupant(tile);
+    }
+
+    /**
+     * Removes the actor on a tile if there is one
+     *
+     * @param tile
+     */
+    public void remove(int tile) {
+        interactionSystem.encounter(tile);
+    }
+
+    /**
+     * Removes the actor on a tile so it can be spawned again later
+     *
+     * @param tile
+     * @return the numerical Entity id of the actor or -1 if the tile is empty
+     */
+    public int evict(int tile) {
+        Entity e = interactionSystem.getOccupant(tile);
+        if (e == null) return -1;
+        int entityID = e.getComponent(TileOccupantComponent.class).entityID;
+        engine.removeEntity(e);
+        return entityID;
+    }
+
+    public void update(float dt) {
+        engine.update(dt);
+    }
+
+    /**
+     * Draws the actors on a range of tiles (inclusive)
+     *
+     * @param batch
+     * @param col0
+     * @param row0
+     * @param col1
+     * @param row1
+     * @param mapWidth
+     */
+    public void render(SpriteBatch batch, int col0, int row0, int col1, int row1, int mapWidth) {
+        renderSystem.render(batch, col0, row0, col1, row1, mapWidth);
+    }
+
+    public int size() {
+        return engine.getEntities().size();
+    }
+
+    /**
+     * Removes every actor, returning their components to the engine's pools
+     */
+    public void clear() {
+        engine.removeAllEntities();
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.loreJourney.ecs;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntityListener;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * Keeps track of which tile every tile occupant is on and handles the
+ * player stepping onto an occupied tile
+ * Interactions happen outside of Engine.update so this system does not process
+ *
+ * @author Ming Li
+ */
+public class InteractionSystem extends EntitySystem implements EntityListener {
+
+    private ComponentMapper<TileOccupantComponent> occupants = ComponentMapper.getFor(TileOccupantComponent.class);
+
+    private Engine engine;
+    // occupants by tile index
+    private IntMap<Entity> tiles = new IntMap<Entity>();
+
+    public InteractionSystem() {
+        setProcessing(false);
+    }
+
+    @Override
+    public void addedToEngine(Engine engine) {
+        this.engine = engine;
+        engine.addEntityListener(Family.all(TileOccupantComponent.class).get(), this);
+    }
+
+    @Override
+    public void removedFromEngine(Engine engine) {
+        engine.removeEntityListener(this);
+        tiles.clear();
+        this.engine = null;
+    }
+
+    @Override
+    public void entityAdded(Entity entity) {
+        tiles.put(occupants.get(entity).tile, entity);
+    }
+
+    @Override
+    public void entityRemoved(Entity entity) {
+        int tile = occupants.get(entity).tile;
+        if (tiles.get(tile) == entity) tiles.remove(tile);
+    }
+
+    public boolean isOccupied(int tile) {
+        return tiles.containsKey(tile);
+    }
+
+    public Entity getOccupant(int tile) {
+        return tiles.get(tile);
+    }
+
+    /**
+     * The player steps onto a tile, removing its occupant from the map
+     *
+     * @param tile
+     */
+    public void encounter(int tile) {
+        Entity e = tiles.get(tile);
+        if (e != null) engine.removeEntity(e);
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.loreJourney.ecs;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Position of an actor in map coordinates (tile * tileSize)
+ *
+ * @author Ming Li
+ */
+public class PositionComponent implements Component, Pool.Poolable {
+
+    public float x;
+    public float y;
+
+    @Override
+    public void reset() {
+        x = y = 0;
+    }
+
+}
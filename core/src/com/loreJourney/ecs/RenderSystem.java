@@ -0,0 +1,59 @@
+package com.loreJourney.ecs;
+
+import com.badlogic.ashley.core.ComponentMapper;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+/**
+ * Draws the animated actors that occupy tiles with a shadow like Entity.render
+ * Rendering happens outside of Engine.update so this system does not process
+ *
+ * Actors are found through the tile index of the InteractionSystem so drawing
+ * a range of tiles only visits those tiles however many actors the map has.
+ *
+ * @author Ming Li
+ */
+public class RenderSystem extends EntitySystem {
+
+    private ComponentMapper<PositionComponent> positions = ComponentMapper.getFor(PositionComponent.class);
+    private ComponentMapper<AnimationComponent> animations = ComponentMapper.getFor(AnimationComponent.class);
+
+    private InteractionSystem tiles;
+    private TextureRegion shadow;
+
+    public RenderSystem(InteractionSystem tiles, TextureRegion shadow) {
+        this.tiles = tiles;
+        this.shadow = shadow;
+        setProcessing(false);
+    }
+
+    /**
+     * Draws the actors on a range of tiles (inclusive)
+     *
+     * @param batch
+     * @param col0
+     * @param row0
+     * @param col1
+     * @param row1
+     * @param mapWidth
+     */
+    public void render(SpriteBatch batch, int col0, int row0, int col1, int row1, int mapWidth) {
+        for (int r = row0; r <= row1; r++) {
+            for (int c = col0; c <= col1; c++) {
+                Entity e = tiles.getOccupant(r * mapWidth + c);
+                if (e != null) render(batch, e);
+            }
+        }
+    }
+
+    private void render(SpriteBatch batch, Entity e) {
+        PositionComponent p = positions.get(e);
+        AnimationComponent a = animations.get(e);
+        if (p == null || a == null) return;
+        batch.draw(shadow, p.x + 3, p.y - 3);
+        batch.draw(a.animation.getKeyFrame(a.stateTime, true), p.x, p.y);
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.loreJourney.ecs;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * RPG attributes of an enemy
+ *
+ * @author Ming Li
+ */
+public class StatsComponent implements Component, Pool.Poolable {
+
+    public String name;
+    public boolean elite;
+    // -1 if the enemy is not a boss
+    public int bossId = -1;
+
+    public int level;
+    public int hp;
+    public int maxHp;
+
+    @Override
+    public void reset() {
+        name = null;
+        elite = false;
+        bossId = -1;
+        level = hp = maxHp = 0;
+    }
+
+}
@@ -0,0 +1,24 @@
+package com.loreJourney.ecs;
+
+import com.badlogic.ashley.core.Component;
+import com.badlogic.gdx.utils.Pool;
+
+/**
+ * Marks an actor as occupying a tile which the player interacts with by stepping on it
+ *
+ * @author Ming Li
+ */
+public class TileOccupantComponent implements Component, Pool.Poolable {
+
+    // tileY * mapWidth + tileX
+    public int tile;
+    // the numerical Entity id the actor was spawned from
+    public int entityID;
+
+    @Override
+    public void reset() {
+        tile = 0;
+        entityID = 0;
+    }
+
+}
@@ -1,12 +1,12 @@
 package com.loreJourney.effects;
 
 import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
-import com.badlogic.gdx.utils.Array;
-import com.badlogic.gdx.utils.Pool;
-import com.loreJourney.animation.AnimationManager;
+import com.badlogic.gdx.utils.Disposable;
 import com.loreJourney.resource.ResourceManager;
 import com.loreJourney.resource.Util;
 
@@ -14,9 +14,38 @@ import com.loreJourney.resource.Util;
  * Stores and manages particles
  * Creates particle effects such as rain and snow
  *
+ * Particles are stored as parallel arrays indexed by particle and a particle
+ * that dies is respawned in place, so nothing is allocated after set.
+ * Death animations play from the time a particle died on a clock shared
+ * by every particle instead of an animation object per particle.
+ * Every particle is drawn as a quad of a WeatherRenderer so all of them
+ * cost one upload and one draw call.
+ *
+ * In wrap mode particles never die. They live in a field the size of the
+ * camera view and leave it on one edge to come back on the opposite edge,
+ * so the weather stays continuous however fast the camera moves. Splashes are
+ * then triggered on their own at random points of the view at the rate
+ * particles would have died.
+ *
  * @author Ming Li
  */
-public class ParticleFactory {
+public class ParticleFactory implements Disposable {
+
+    // types of particles
+    public static final byte RAINDROP = 0;
+    public static final byte SNOWFLAKE = 1;
+    public static final byte STATIC_RAINDROP = 2;
+
+    // states of particles
+    private static final byte ALIVE = 0;
+    // playing the death animation
+    private static final byte DYING = 1;
+
+    // lifespans in seconds
+    private static final float RAINDROP_MIN_LIFE = 0.4f;
+    private static final float RAINDROP_MAX_LIFE = 1.4f;
+    private static final float SNOWFLAKE_MIN_LIFE = 0.3f;
+    private static final float SNOWFLAKE_MAX_LIFE = 1.4f;
 
     // type of particle being generated
     public int type;
@@ -24,18 +53,44 @@ public class ParticleFactory {
     public int numParticles;
     // velocity of particles
     public Vector2 velocity;
+    // particles wrap around the camera view instead of dying and respawning
+    public boolean wrap;
+
+    // data by particle
+    private float[] x = new float[0];
+    private float[] y = new float[0];
+    private float[] vx = new float[0];
+    private float[] vy = new float[0];
+    // remaining lifespan
+    private float[] life = new float[0];
+    // time on the clock the particle died at
+    private float[] death = new float[0];
+    private byte[] state = new byte[0];
 
-    // data
-    public Array<Particle> particles;
-    // pool
-    public Pool<Particle> particlePool;
+    // ring buffer of splashes in wrap mode
+    private float[] splashX = new float[0];
+    private float[] splashY = new float[0];
+    // time on the clock the splash started at
+    private float[] splashStart = new float[0];
+    private int nextSplash;
+    // splashes due but not triggered yet
+    private float splashesDue;
 
-    private Vector2 particleVelocity = new Vector2();
+    // time since the factory was set, drives every death animation
+    private float clock;
+
+    // sprite of live particles
+    private TextureRegion sprite;
+    // frames of the death animation (null if particles have none)
+    private TextureRegion[] deathFrames;
+    private float deathFrameDuration;
 
     // camera viewport
     private int viewWidth;
     private int viewHeight;
 
+    private WeatherRenderer renderer;
+
     private OrthographicCamera cam;
     private final ResourceManager rm;
 
@@ -45,42 +100,107 @@ public class ParticleFactory {
         this.viewHeight = (int) cam.viewportHeight;
         this.rm = rm;
 
-        particles = new Array<Particle>();
-        particlePool = new Pool<Particle>() {
-            @Override
-            protected Particle newObject() {
-                return new Particle();
-            }
-        };
+        renderer = new WeatherRenderer(1);
     }
 
     public void update(float dt) {
-        // update all particles and free them if necessary
-        for (int i = particles.size - 1; i >= 0; i--) {
-            Particle p = particles.get(i);
-            p.update(dt);
-            if (p.shouldRemove) {
-                if (p.deathAnim != null) {
-                    if (p.deathAnim.currentAnimation.isAnimationFinished()) {
-                        particles.removeIndex(i);
-                        particlePool.free(p);
-                        spawn();
+        clock += dt;
+        if (wrap) {
+            updateWrapped(dt);
+            return;
+        }
+        for (int i = 0; i < numParticles; i++) {
+            if (state[i] == ALIVE) {
+                x[i] += vx[i] * dt;
+                y[i] += vy[i] * dt;
+                life[i] -= dt;
+                if (life[i] <= 0) {
+                    if (deathFrames != null) {
+                        state[i] = DYING;
+                        death[i] = clock;
                     }
-                }
-                else {
-                    particles.removeIndex(i);
-                    particlePool.free(p);
-                    spawn();
+                    else spawn(i);
                 }
             }
+            else if (getDeathFrame(i) >= deathFrames.length) spawn(i);
+        }
+    }
+
+    /**
+     * Moves particles that never die and triggers splashes
+     * at the rate the particles would have died at
+     *
+     * @param dt
+     */
+    private void updateWrapped(float dt) {
+        for (int i = 0; i < numParticles; i++) {
+            x[i] += vx[i] * dt;
+            y[i] += vy[i] * dt;
+        }
+        if (deathFrames == null) return;
+
+        // a particle lived for its lifespan and then played its death animation
+        float cycle = (RAINDROP_MIN_LIFE + RAINDROP_MAX_LIFE) / 2 + deathFrames.length * deathFrameDuration;
+        splashesDue += numParticles * dt / cycle;
+        while (splashesDue >= 1) {
+            splashX[nextSplash] = cam.position.x + MathUtils.random(-viewWidth / 2, viewWidth / 2);
+            splashY[nextSplash] = cam.position.y + MathUtils.random(-viewHeight / 2, viewHeight / 2);
+            splashStart[nextSplash] = clock;
+            nextSplash = (nextSplash + 1) % splashX.length;
+            splashesDue--;
         }
     }
 
     public void render(SpriteBatch batch) {
+        if (wrap) {
+            renderWrapped(batch);
+            return;
+        }
         // render all particles
-        for (int i = 0; i < particles.size; i++) {
-            particles.get(i).render(batch);
+        renderer.begin(batch);
+        for (int i = 0; i < numParticles; i++) {
+            if (state[i] == ALIVE) renderer.add(sprite, x[i], y[i], batch);
+            else renderer.add(deathFrames[Math.min(getDeathFrame(i), deathFrames.length - 1)], x[i], y[i], batch);
         }
+        renderer.end(batch);
+    }
+
+    /**
+     * Wraps particles into the camera view and renders them with the splashes
+     * Particles are wrapped here rather than in update so they match the camera
+     * position the frame is drawn with
+     *
+     * @param batch
+     */
+    private void renderWrapped(SpriteBatch batch) {
+        // the field extends a sprite past the left and bottom edges so particles leave the view entirely before wrapping
+        float width = viewWidth + sprite.getRegionWidth();
+        float height = viewHeight + sprite.getRegionHeight();
+        float left = cam.position.x - viewWidth / 2 - sprite.getRegionWidth();
+        float bottom = cam.position.y - viewHeight / 2 - sprite.getRegionHeight();
+
+        renderer.begin(batch);
+        for (int i = 0; i < numParticles; i++) {
+            x[i] = left + wrap(x[i] - left, width);
+            y[i] = bottom + wrap(y[i] - bottom, height);
+            renderer.add(sprite, x[i], y[i], batch);
+        }
+        if (deathFrames != null) {
+            for (int i = 0; i < splashX.length; i++) {
+                int frame = (int) ((clock - splashStart[i]) / deathFrameDuration);
+                if (frame < deathFrames.length) renderer.add(deathFrames[frame], splashX[i], splashY[i], batch);
+            }
+        }
+        renderer.end(batch);
+    }
+
+    private static float wrap(float value, float size) {
+        value %= size;
+        return value < 0 ? value + size : value;
+    }
+
+    private int getDeathFrame(int i) {
+        return (int) ((clock - death[i]) / deathFrameDuration);
     }
 
     /**
@@ -90,53 +210,103 @@ public class ParticleFactory {
      * @param numParticles
      */
     public void set(int type, int numParticles, Vector2 velocity) {
-        particles.clear();
-        particlePool.clear();
         this.type = type;
         this.numParticles = numParticles;
         this.velocity = velocity;
+
+        ensureCapacity(numParticles);
+        clock = 0;
+        // a splash is over once the clock passed its start by the animation
+        java.util.Arrays.fill(splashStart, -Float.MAX_VALUE);
+        splashesDue = 0;
+
+        deathFrames = null;
+        switch (type) {
+            case RAINDROP:
+                sprite = rm.raindrop;
+                Animation splash = rm.getAnimation(rm.raindropAnim16x16, 0, 0, 3, 1 / 6f);
+                deathFrames = splash.getKeyFrames();
+                deathFrameDuration = splash.getFrameDuration();
+                break;
+            case SNOWFLAKE:
+                sprite = rm.snowflake;
+                break;
+            case STATIC_RAINDROP:
+                sprite = rm.raindrop;
+                break;
+        }
         populate();
     }
 
     /**
-     * Spawns one particle of a certain type from the Pool
+     * Changes the number of live particles without resetting the ones that remain
+     * Particles are respawned as they die so the spawn rate follows the count
+     *
+     * @param numParticles
+     */
+    public void setCount(int numParticles) {
+        ensureCapacity(numParticles);
+        for (int i = this.numParticles; i < numParticles; i++) spawn(i);
+        this.numParticles = numParticles;
+    }
+
+    private void ensureCapacity(int n) {
+        if (x.length < n) {
+            x = java.util.Arrays.copyOf(x, n);
+            y = java.util.Arrays.copyOf(y, n);
+            vx = java.util.Arrays.copyOf(vx, n);
+            vy = java.util.Arrays.copyOf(vy, n);
+            life = java.util.Arrays.copyOf(life, n);
+            death = java.util.Arrays.copyOf(death, n);
+            state = java.util.Arrays.copyOf(state, n);
+        }
+        // fewer splashes than particles are playing at once in wrap mode
+        if (splashX.length < n / 2 + 1) {
+            int old = splashX.length;
+            splashX = java.util.Arrays.copyOf(splashX, n / 2 + 1);
+            splashY = java.util.Arrays.copyOf(splashY, n / 2 + 1);
+            splashStart = java.util.Arrays.copyOf(splashStart, n / 2 + 1);
+            java.util.Arrays.fill(splashStart, old, splashStart.length, -Float.MAX_VALUE);
+        }
+        renderer.ensureCapacity(n + splashX.length);
+    }
+
+    /**
+     * Spawns particle i at a random position on the screen
+     *
+     * @param i
      */
-    public void spawn() {
-        Particle item = particlePool.obtain();
-        Vector2 weatherParticleSpawnPosition = new Vector2(cam.position.x + MathUtils.random(-viewWidth / 2, viewWidth / 2),
-                cam.position.y + MathUtils.random(-viewHeight / 2, viewHeight / 2));
+    public void spawn(int i) {
+        x[i] = cam.position.x + MathUtils.random(-viewWidth / 2, viewWidth / 2);
+        y[i] = cam.position.y + MathUtils.random(-viewHeight / 2, viewHeight / 2);
+        vx[i] = velocity.x;
         switch (type) {
-            case Particle.RAINDROP:
-                float rls = MathUtils.random(0.4f, 1.4f);
-                particleVelocity.set(this.velocity.x,
-                        Util.getDeviatedRandomValue((int) this.velocity.y, Util.RAINDROP_Y_DEVIATED));
-                AnimationManager rainAnim = new AnimationManager(rm.raindropAnim16x16, 3, 0, 1 / 6f);
-                item.init(type, weatherParticleSpawnPosition, particleVelocity, rls, rm.raindrop, rainAnim);
+            case RAINDROP:
+            case STATIC_RAINDROP:
+                life[i] = MathUtils.random(RAINDROP_MIN_LIFE, RAINDROP_MAX_LIFE);
+                vy[i] = Util.getDeviatedRandomValue((int) velocity.y, Util.RAINDROP_Y_DEVIATED);
                 break;
-            case Particle.SNOWFLAKE:
-                float sls = MathUtils.random(0.3f, 1.4f);
-                particleVelocity.set(this.velocity.x,
-                        Util.getDeviatedRandomValue((int) this.velocity.y, Util.SNOWFLAKE_Y_DEVIATED));
-                item.init(type, weatherParticleSpawnPosition, particleVelocity, sls, rm.snowflake, null);
-                break;
-            case Particle.STATIC_RAINDROP:
-                float srls = MathUtils.random(0.4f, 1.4f);
-                particleVelocity.set(this.velocity.x,
-                    Util.getDeviatedRandomValue((int) this.velocity.y, Util.RAINDROP_Y_DEVIATED));
-                item.init(type, weatherParticleSpawnPosition, particleVelocity, srls, rm.raindrop, null);
+            case SNOWFLAKE:
+                life[i] = MathUtils.random(SNOWFLAKE_MIN_LIFE, SNOWFLAKE_MAX_LIFE);
+                vy[i] = Util.getDeviatedRandomValue((int) velocity.y, Util.SNOWFLAKE_Y_DEVIATED);
                 break;
         }
-        particles.add(item);
+        state[i] = ALIVE;
     }
 
     /**
-     * Populates the array of particles with an initial
+     * Populates the arrays of particles with an initial
      * numParticles amount of particles
      */
     public void populate() {
         for (int i = 0; i < numParticles; i++) {
-            spawn();
+            spawn(i);
         }
     }
 
+    @Override
+    public void dispose() {
+        renderer.dispose();
+    }
+
 }
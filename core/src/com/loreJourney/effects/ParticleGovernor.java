@@ -0,0 +1,111 @@
+package com.loreJourney.effects;
+
+/**
+ * Scales the number of weather particles to the frame time the device achieves.
+ *
+ * Frame times and the time spent working on each frame are kept over a rolling
+ * window. Once the window is full the count is lowered if frames take longer
+ * than the target and raised only if frames are on target with plenty of work
+ * time left. Between the two thresholds the count is kept even with work time
+ * to spare, and after every change a whole new window is measured before
+ * changing again so the count doesn't oscillate.
+ *
+ * @author Ming Li
+ */
+public class ParticleGovernor {
+
+    // frames measured before the count can change
+    public static final int WINDOW = 60;
+
+    // seconds per frame to maintain
+    public float targetFrameTime = 1 / 60f;
+    // the count is lowered when the average frame takes this fraction of the target
+    public float slowThreshold = 1.15f;
+    // the count is raised when the average frame takes at most this fraction of the target
+    // (a little over 1 so the jitter of vsynced frames still counts as on target)
+    public float onTargetThreshold = 1.02f;
+    // and work takes under this fraction of the target
+    public float idleThreshold = 0.5f;
+    public float decreaseFactor = 0.75f;
+    public float increaseFactor = 1.1f;
+
+    // rolling window
+    private float[] frameTimes = new float[WINDOW];
+    private float[] workTimes = new float[WINDOW];
+    private float frameSum;
+    private float workSum;
+    private int samples;
+    private int next;
+
+    // bounds of the count
+    private int min;
+    private int max;
+    private int count;
+
+    /**
+     * Sets the bounds of the count and starts measuring again from a count
+     *
+     * @param min
+     * @param max
+     * @param count
+     */
+    public void set(int min, int max, int count) {
+        this.min = min;
+        this.max = max;
+        this.count = Math.min(Math.max(count, min), max);
+        reset();
+    }
+
+    /**
+     * Adds a frame to the window and adjusts the count
+     *
+     * @param frameTime seconds between this frame and the previous one
+     * @param workTime seconds spent updating and rendering this frame
+     * @return whether the count changed
+     */
+    public boolean update(float frameTime, float workTime) {
+        // a single long frame such as a map load shouldn't dominate the window
+        frameTime = Math.min(frameTime, 2 * targetFrameTime);
+        workTime = Math.min(workTime, 2 * targetFrameTime);
+
+        if (samples == WINDOW) {
+            frameSum -= frameTimes[next];
+            workSum -= workTimes[next];
+        }
+        else samples++;
+        frameTimes[next] = frameTime;
+        workTimes[next] = workTime;
+        frameSum += frameTime;
+        workSum += workTime;
+        next = (next + 1) % WINDOW;
+        if (samples < WINDOW) return false;
+
+        float frame = frameSum / WINDOW;
+        float work = workSum / WINDOW;
+        int target = count;
+        if (frame > targetFrameTime * slowThreshold) {
+            target = Math.max(min, (int) (count * decreaseFactor));
+        }
+        else if (frame <= targetFrameTime * onTargetThreshold && work < targetFrameTime * idleThreshold) {
+            target = Math.min(max, (int) Math.ceil(count * increaseFactor));
+        }
+        if (target == count) return false;
+
+        count = target;
+        reset();
+        return true;
+    }
+
+    /**
+     * Clears the window
+     */
+    public void reset() {
+        frameSum = workSum = 0;
+        samples = next = 0;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+}
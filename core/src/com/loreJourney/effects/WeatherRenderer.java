@@ -0,0 +1,184 @@
+package com.loreJourney.effects;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.VertexAttribute;
+import com.badlogic.gdx.graphics.VertexAttributes.Usage;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Draws weather particles as quads written into one preallocated vertex array
+ * that is uploaded to a Mesh once and drawn with a single draw call per frame.
+ *
+ * Every sprite must come from the same texture (the texture atlas) so that
+ * the quads only differ by their atlas UVs. The quads use the vertex layout
+ * and shader of the SpriteBatch so particles look the same as batched sprites.
+ *
+ * @author Ming Li
+ */
+public class WeatherRenderer implements Disposable {
+
+    // the max number of quads that can be indexed with shorts
+    public static final int MAX_QUADS = 8191;
+
+    // x, y, color, u, v
+    private static final int VERTEX_SIZE = 5;
+    private static final int QUAD_SIZE = 4 * VERTEX_SIZE;
+
+    private Mesh mesh;
+    private float[] vertices;
+    // the number of quads the mesh holds
+    private int capacity;
+    // the number of quads written this frame
+    private int count;
+
+    private Texture texture;
+    private float color;
+
+    private final Matrix4 combined = new Matrix4();
+
+    public WeatherRenderer(int capacity) {
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Recreates the mesh if it holds less than a number of quads
+     * Beyond MAX_QUADS quads are drawn in several draw calls
+     *
+     * @param quads
+     */
+    public void ensureCapacity(int quads) {
+        quads = Math.min(Math.max(quads, 1), MAX_QUADS);
+        if (quads <= capacity) return;
+        if (mesh != null) mesh.dispose();
+
+        capacity = quads;
+        mesh = new Mesh(false, capacity * 4, capacity * 6,
+            new VertexAttribute(Usage.Position, 2, ShaderProgram.POSITION_ATTRIBUTE),
+            new VertexAttribute(Usage.ColorPacked, 4, ShaderProgram.COLOR_ATTRIBUTE),
+            new VertexAttribute(Usage.TextureCoordinates, 2, ShaderProgram.TEXCOORD_ATTRIBUTE + "0"));
+        vertices = new float[capacity * QUAD_SIZE];
+
+        short[] indices = new short[capacity * 6];
+        for (int i = 0, j = 0; i < indices.length; i += 6, j += 4) {
+            indices[i] = (short) j;
+            indices[i + 1] = (short) (j + 1);
+            indices[i + 2] = (short) (j + 2);
+            indices[i + 3] = (short) (j + 2);
+            indices[i + 4] = (short) (j + 3);
+            indices[i + 5] = (short) j;
+        }
+        mesh.setIndices(indices);
+    }
+
+    /**
+     * Starts a frame of quads tinted with the color of a batch
+     *
+     * @param batch
+     */
+    public void begin(SpriteBatch batch) {
+        count = 0;
+        texture = null;
+        color = batch.getPackedColor();
+    }
+
+    /**
+     * Writes a quad the size of a region at a position
+     * The batch is only needed if the mesh is full and has to be drawn early
+     *
+     * @param region
+     * @param x
+     * @param y
+     * @param batch
+     */
+    public void add(TextureRegion region, float x, float y, SpriteBatch batch) {
+        if (texture == null) texture = region.getTexture();
+        else if (texture != region.getTexture()) {
+            throw new GdxRuntimeException("Weather sprites must come from a single texture");
+        }
+        if (count == capacity) flush(batch);
+
+        float x2 = x + region.getRegionWidth();
+        float y2 = y + region.getRegionHeight();
+        float u = region.getU();
+        float v = region.getV2();
+        float u2 = region.getU2();
+        float v2 = region.getV();
+
+        float[] vertices = this.vertices;
+        int i = count * QUAD_SIZE;
+        vertices[i] = x;
+        vertices[i + 1] = y;
+        vertices[i + 2] = color;
+        vertices[i + 3] = u;
+        vertices[i + 4] = v;
+
+        vertices[i + 5] = x;
+        vertices[i + 6] = y2;
+        vertices[i + 7] = color;
+        vertices[i + 8] = u;
+        vertices[i + 9] = v2;
+
+        vertices[i + 10] = x2;
+        vertices[i + 11] = y2;
+        vertices[i + 12] = color;
+        vertices[i + 13] = u2;
+        vertices[i + 14] = v2;
+
+        vertices[i + 15] = x2;
+        vertices[i + 16] = y;
+        vertices[i + 17] = color;
+        vertices[i + 18] = u2;
+        vertices[i + 19] = v;
+        count++;
+    }
+
+    /**
+     * Draws the quads written since begin
+     *
+     * @param batch
+     */
+    public void end(SpriteBatch batch) {
+        if (count > 0) flush(batch);
+    }
+
+    /**
+     * Uploads the written quads and draws them in one draw call
+     * The batch is ended while the mesh is drawn and begun again afterwards
+     */
+    private void flush(SpriteBatch batch) {
+        batch.end();
+
+        Gdx.gl.glDepthMask(false);
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(batch.getBlendSrcFunc(), batch.getBlendDstFunc());
+
+        ShaderProgram shader = batch.getShader();
+        combined.set(batch.getProjectionMatrix()).mul(batch.getTransformMatrix());
+        shader.begin();
+        shader.setUniformMatrix("u_projTrans", combined);
+        shader.setUniformi("u_texture", 0);
+        texture.bind(0);
+        mesh.setVertices(vertices, 0, count * QUAD_SIZE);
+        mesh.render(shader, GL20.GL_TRIANGLES, 0, count * 6);
+        shader.end();
+
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+        count = 0;
+
+        batch.begin();
+    }
+
+    @Override
+    public void dispose() {
+        if (mesh != null) mesh.dispose();
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.loreJourney.entity;
 
+import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.Vector2;
 import com.loreJourney.animation.AnimationManager;
@@ -22,6 +23,8 @@ public abstract class Entity {
     protected boolean pauseAnim = false;
     // battle scene animation
     protected AnimationManager bam;
+    // shared battle scene animation that bam is created from when it is first needed
+    protected Animation battleAnimation;
 
     // position (x,y) in map coordinates (tile * tileSize)
     protected Vector2 position;
@@ -73,6 +76,17 @@ public abstract class Entity {
     }
 
     public void update(float dt) {
+        simulate(dt);
+        apply();
+    }
+
+    /**
+     * The part of update that only changes the state of this Entity
+     * so different entities can be simulated on different threads at once
+     *
+     * @param dt
+     */
+    public void simulate(float dt) {
         // handle RPG elements
         if (hp > maxHp) hp = maxHp;
         if (hp <= 0) {
@@ -83,6 +97,12 @@ public abstract class Entity {
         if (!pauseAnim) am.update(dt);
     }
 
+    /**
+     * The part of update that touches shared state such as rendering, audio or the tile map
+     * Always called on the render thread after simulate
+     */
+    public void apply() {}
+
     public void render(SpriteBatch batch, boolean looping) {
         // draw shadow
         batch.draw(rm.shadow11x6, position.x + 3, position.y - 3);
@@ -184,7 +204,7 @@ public abstract class Entity {
 
     public void setMap(TileMap map) {
         this.tileMap = map;
-        this.position.set(map.toMapCoords(map.playerSpawn));
+        map.toMapCoords(map.playerSpawn, position);
     }
 
     public void setAccuracy(int accuracy) {
@@ -201,7 +221,10 @@ public abstract class Entity {
 
     public AnimationManager getAm() { return am; }
 
-    public AnimationManager getBam() { return bam; }
+    public AnimationManager getBam() {
+        if (bam == null && battleAnimation != null) bam = new AnimationManager(battleAnimation);
+        return bam;
+    }
 
     public String getId() {
         return id;
@@ -274,7 +297,19 @@ public abstract class Entity {
      * @return
      */
     public Tile getCurrentTile() {
-        return tileMap.getTile(tileMap.toTileCoords(position));
+        return tileMap.getTile(getTileX(), getTileY());
+    }
+
+    /**
+     * Returns the tile coordinates of the tile the Entity is currently standing on
+     * @return
+     */
+    public int getTileX() {
+        return tileMap.toTile(position.x);
+    }
+
+    public int getTileY() {
+        return tileMap.toTile(position.y);
     }
 
     public boolean isHasShield() {
@@ -2,7 +2,7 @@ package com.loreJourney.entity;
 
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.MathUtils;
-import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.math.Vector2;
 import com.loreJourney.animation.AnimationManager;
 import com.loreJourney.entity.enemy.Enemy;
 // REMOVED: Inventory system disabled
@@ -36,6 +36,11 @@ public class Player extends Entity {
     private int currentTileX;
     private int currentTileY;
     private int prevDir = -1;
+    // tile coordinate along the direction of movement that a slide across ice ends on (-1 if not sliding)
+    private int slideTarget = -1;
+    // position before the last simulation step and the position drawn between the two
+    private Vector2 previousPosition = new Vector2();
+    private Vector2 renderPosition = new Vector2();
     // tile causing a dialog event
     private boolean tileInteraction = false;
     // teleportation tiles
@@ -98,6 +103,7 @@ public class Player extends Entity {
     }
 
     public void update(float dt) {
+        previousPosition.set(position);
         super.update(dt);
 
         // movement
@@ -106,10 +112,13 @@ public class Player extends Entity {
         handleSpecialTiles();
 
         // DISABLED: Battle system - automatically remove enemy when encountered
-        if (tileMap.containsEntity(tileMap.toTileCoords(position)) && canMove()) {
-            opponent = (com.loreJourney.entity.enemy.Enemy) tileMap.getEntity(tileMap.toTileCoords(position));
+        int tileX = getTileX();
+        int tileY = getTileY();
+        // enemies on ice tiles are also met in the middle of a slide
+        if (tileMap.containsEntity(tileX, tileY) && (canMove() || slideTarget != -1)) {
+            opponent = (com.loreJourney.entity.enemy.Enemy) tileMap.getEntity(tileX, tileY);
             // Automatically remove enemy without battle
-            tileMap.removeEntity(tileMap.toTileCoords(position));
+            tileMap.removeEntity(tileX, tileY);
             opponent = null;
             // Skip battle entirely - no battling flag set
         }
@@ -117,8 +126,28 @@ public class Player extends Entity {
 
     public void render(SpriteBatch batch) {
         // draw shadow
-        batch.draw(rm.shadow11x6, position.x + 3, position.y - 3);
-        batch.draw(am.getKeyFrame(true), position.x + 1, position.y);
+        batch.draw(rm.shadow11x6, renderPosition.x + 3, renderPosition.y - 3);
+        batch.draw(am.getKeyFrame(true), renderPosition.x + 1, renderPosition.y);
+    }
+
+    /**
+     * Places the drawn position between the positions before and after the last simulation step
+     * Jumps further than a tile (teleporting, a new map) are not interpolated
+     *
+     * @param alpha fraction of a step the simulation is behind real time (0 - 1)
+     */
+    public void interpolate(float alpha) {
+        if (previousPosition.dst2(position) > tileMap.tileSize * tileMap.tileSize) renderPosition.set(position);
+        else renderPosition.set(previousPosition).lerp(position, MathUtils.clamp(alpha, 0, 1));
+    }
+
+    /**
+     * The position the player is drawn at, use for anything that follows the player on screen
+     *
+     * @return
+     */
+    public Vector2 getRenderPosition() {
+        return renderPosition;
     }
 
     /**
@@ -151,151 +180,87 @@ public class Player extends Entity {
         currentTileY = (int) (position.y / tileMap.tileSize);
         switch (dir) {
             case 0: // down
-                return tileMap.getTile(currentTileX, currentTileY - 1).isBlocked();
+                return tileMap.isBlocked(currentTileX, currentTileY - 1);
             case 1: // up
-                return tileMap.getTile(currentTileX, currentTileY + 1).isBlocked();
+                return tileMap.isBlocked(currentTileX, currentTileY + 1);
             case 2: // right
-                return tileMap.getTile(currentTileX + 1, currentTileY).isBlocked();
+                return tileMap.isBlocked(currentTileX + 1, currentTileY);
             case 3: // left
-                return tileMap.getTile(currentTileX - 1, currentTileY).isBlocked();
+                return tileMap.isBlocked(currentTileX - 1, currentTileY);
         }
         return false;
     }
 
     /**
      * Returns the next tile coordinate to move to either
-     * currentPos +/- 1 or currentPos if the next tile is blocked
+     * currentPos +/- 1, currentPos if the next tile is blocked
+     * or the end of a slide across ice
      *
      * @param dir
      * @return
      */
     public int nextPosition(int dir) {
-        switch (dir) {
-            case 0: // down
-                Tile d = tileMap.getTile(currentTileX, currentTileY - 1);
-                if (d.isBlocked() || currentTileY - 1 <= 0) {
-                    return currentTileY;
-                }
-                return currentTileY - 1;
-            case 1: // up
-                Tile u = tileMap.getTile(currentTileX, currentTileY + 1);
-                if (u.isBlocked() || currentTileY + 1 >= tileMap.mapHeight - 1) {
-                    return currentTileY;
-                }
-                return currentTileY + 1;
-            case 2: // right
-                Tile r = tileMap.getTile(currentTileX + 1, currentTileY);
-                if (r.isBlocked() || currentTileX + 1 >= tileMap.mapWidth - 1) {
-                    return currentTileX;
-                }
-                return currentTileX + 1;
-            case 3: // left
-                Tile l = tileMap.getTile(currentTileX - 1, currentTileY);
-                if (l.isBlocked() || currentTileX - 1 <= 0) {
-                    return currentTileX;
-                }
-                return currentTileX - 1;
-        }
-        return 0;
+        if (slideTarget != -1) return slideTarget;
+        int next = tileMap.transitions.getStep(currentTileY * tileMap.mapWidth + currentTileX, dir);
+        // down and up move along y
+        if (dir < 2) return next / tileMap.mapWidth;
+        return next % tileMap.mapWidth;
     }
 
     /**
      * Handles the player's next movements when standing on a special tile
      */
     public void handleSpecialTiles() {
-        int cx = (int) (position.x / tileMap.tileSize);
-        int cy = (int) (position.y / tileMap.tileSize);
-        Tile currentTile = tileMap.getTile(cx, cy);
+        // only the type is needed so no Tile is created every frame
+        int type = tileMap.getType(getTileX(), getTileY());
 
-        if (currentTile.isSpecial()) am.currentAnimation.stop();
+        if (Tile.isSpecial(type)) am.currentAnimation.stop();
 
         if (canMove()) {
-            // Player goes forwards or backwards from the tile in the direction they entered
-            if (currentTile.isChange()) {
-                if (!settings.muteSfx) rm.movement.play(settings.sfxVolume);
-                boolean k = MathUtils.randomBoolean();
-                switch (prevDir) {
-                    case 0: // down
-                        if (k) changeDirection(1);
-                        else changeDirection(0);
-                        break;
-                    case 1: // up
-                        if (k) changeDirection(0);
-                        else changeDirection(1);
-                        break;
-                    case 2: // right
-                        if (k) changeDirection(3);
-                        else changeDirection(2);
-                        break;
-                    case 3: // left
-                        if (k) changeDirection(2);
-                        else changeDirection(3);
-                        break;
-                }
-            }
-            // Player goes 1 tile in a random direction not the direction they entered the tile on
-            else if (currentTile.isInAndOut()) {
-                if (!settings.muteSfx) rm.movement.play(settings.sfxVolume);
-                // output direction (all other directions other than input direction)
-                int odir = MathUtils.random(2);
-                switch (prevDir) {
-                    case 0: // down
-                        if (odir == 0) changeDirection(3);
-                        else if (odir == 1) changeDirection(2);
-                        else changeDirection(0);
-                        break;
-                    case 1: // up
-                        if (odir == 0) changeDirection(3);
-                        else if (odir == 1) changeDirection(2);
-                        else changeDirection(1);
-                        break;
-                    case 2: // right
-                        if (odir == 0) changeDirection(0);
-                        else if (odir == 1) changeDirection(1);
-                        else changeDirection(2);
-                        break;
-                    case 3: // left
-                        if (odir == 0) changeDirection(0);
-                        else if (odir == 1) changeDirection(1);
-                        else changeDirection(3);
-                        break;
-                }
-            }
-            else if (currentTile.isDown()) {
-                if (!settings.muteSfx) rm.movement.play(settings.sfxVolume);
-                changeDirection(0);
-            }
-            else if (currentTile.isUp()) {
-                if (!settings.muteSfx) rm.movement.play(settings.sfxVolume);
-                changeDirection(1);
-            }
-            else if (currentTile.isRight()) {
-                if (!settings.muteSfx) rm.movement.play(settings.sfxVolume);
-                changeDirection(2);
-            }
-            else if (currentTile.isLeft()) {
+            int k = getTileY() * tileMap.mapWidth + getTileX();
+            // arrow, change and in and out tiles send the player in one of these directions
+            int redirects = tileMap.transitions.getRedirects(k, prevDir);
+            if (redirects != 0) {
                 if (!settings.muteSfx) rm.movement.play(settings.sfxVolume);
-                changeDirection(3);
+                changeDirection(chooseDirection(redirects));
             }
             // trigger dialog event
-            else if (currentTile.isQuestionMark() || currentTile.isExclamationMark()) tileInteraction = true;
+            else if (type == Tile.QUESTION_MARK || type == Tile.EXCLAMATION_MARK) tileInteraction = true;
             // trigger teleport event
-            else if (currentTile.isTeleport()) teleporting = true;
-            // ice sliding
-            else if (currentTile.isIce()) {
-                if (!nextTileBlocked(prevDir)) {
+            else if (type == Tile.TELEPORT) teleporting = true;
+            // ice sliding, the whole slide is resolved at once and animated as a single movement
+            else if (type == Tile.ICE) {
+                int end = tileMap.transitions.getSlide(k, prevDir);
+                if (end != k) {
                     move(prevDir);
+                    slideTarget = prevDir < 2 ? end / tileMap.mapWidth : end % tileMap.mapWidth;
+                    // one step per tile slid over
+                    stats.numSteps += Math.abs(slideTarget - (prevDir < 2 ? currentTileY : currentTileX)) - 1;
                     am.setAnimation(prevDir);
                     am.stopAnimation();
                     pauseAnim = true;
                 }
             }
             // map completed
-            else if (currentTile.isEnd()) completedMap = true;
+            else if (type == Tile.END) completedMap = true;
             else pauseAnim = false;
         }
     }
 
+    /**
+     * Picks one of the directions a tile can redirect the player in at random
+     *
+     * @param redirects bits of the possible directions
+     * @return
+     */
+    private int chooseDirection(int redirects) {
+        int choose = MathUtils.random(Integer.bitCount(redirects) - 1);
+        for (int dir = 0; dir < 4; dir++) {
+            if ((redirects & 1 << dir) != 0 && choose-- == 0) return dir;
+        }
+        return -1;
+    }
+
     public void changeDirection(int dir) {
         move(dir);
         prevDir = dir;
@@ -358,6 +323,7 @@ public class Player extends Entity {
                 }
             }
         }
+        if (moving == -1) slideTarget = -1;
     }
 
     /**
@@ -468,10 +434,9 @@ public class Player extends Entity {
      * Sets the player's position to another teleportation tile anywhere on the map
      */
     public void teleport() {
-        Tile currentTile = tileMap.getTile(tileMap.toTileCoords(position));
-        Array<Tile> candidates = tileMap.getTeleportationTiles(currentTile);
-        Tile choose = candidates.get(MathUtils.random(candidates.size - 1));
-        position.set(tileMap.toMapCoords(choose.tilePosition));
+        int k = tileMap.getTeleportDestination(getTileX(), getTileY());
+        if (k == -1) return;
+        position.set((k % tileMap.mapWidth) * tileMap.tileSize, (k / tileMap.mapWidth) * tileMap.tileSize);
     }
 
     /**
@@ -516,7 +481,7 @@ public class Player extends Entity {
     public void skipEnemyEncounter() {
         if (battling && opponent != null) {
             // Remove enemy from tilemap using tile coordinates
-            tileMap.removeEntity(tileMap.toTileCoords(position));
+            tileMap.removeEntity(getTileX(), getTileY());
             // Reset battle state
             battling = false;
             opponent = null;
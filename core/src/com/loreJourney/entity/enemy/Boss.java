@@ -2,7 +2,6 @@ package com.loreJourney.entity.enemy;
 
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
-import com.loreJourney.animation.AnimationManager;
 import com.loreJourney.map.TileMap;
 import com.loreJourney.resource.ResourceManager;
 import com.loreJourney.resource.Util;
@@ -21,15 +20,14 @@ public class Boss extends Enemy {
         super(id, position, tileMap, rm);
     }
 
-    public Boss(String id, int bossId, Vector2 position, TileMap tileMap, ResourceManager rm,
-                int worldIndex, int startIndex, int numFrames, float delay) {
-        this(id, position, tileMap, rm);
-        this.bossId = bossId;
+    public Boss(ResourceManager rm) {
+        super(rm);
+    }
 
-        // create tilemap animation
-        am = new AnimationManager(rm.sprites16x16, worldIndex, startIndex, numFrames, delay);
-        // create battle scene animation
-        bam = new AnimationManager(rm.battleSprites96x96, worldIndex, startIndex, 2, delay);
+    protected void init(String id, int bossId, Vector2 position, TileMap tileMap,
+                        int worldIndex, int startIndex, int numFrames, float delay) {
+        init(id, position, tileMap, worldIndex, startIndex, numFrames, delay);
+        this.bossId = bossId;
     }
 
     @Override
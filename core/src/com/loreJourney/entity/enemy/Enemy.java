@@ -1,6 +1,9 @@
 package com.loreJourney.entity.enemy;
 
+import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Pool;
+import com.loreJourney.animation.AnimationManager;
 import com.loreJourney.entity.Entity;
 import com.loreJourney.map.TileMap;
 import com.loreJourney.resource.ResourceManager;
@@ -9,10 +12,11 @@ import com.loreJourney.resource.ResourceManager;
  * An Entity that the Player can battle if encountered
  * A Tile will hold an Enemy
  * An Enemy will not be able to move
+ * Enemies are reused across maps through an EnemyPool
  *
  * @author Ming Li
  */
-public abstract class Enemy extends Entity {
+public abstract class Enemy extends Entity implements Pool.Poolable {
 
     // battle sprite size
     // (used for making sprites bigger or smaller for effect)
@@ -27,6 +31,66 @@ public abstract class Enemy extends Entity {
         numRespawn = 0;
     }
 
+    /**
+     * Creates an Enemy to be initialized by init when obtained from an EnemyPool
+     *
+     * @param rm
+     */
+    public Enemy(ResourceManager rm) {
+        super("", rm);
+        battleSize = 48;
+        numRespawn = 0;
+    }
+
+    /**
+     * Initializes the Enemy's components
+     *
+     * @param id
+     * @param position copied into the Enemy's position
+     * @param tileMap
+     * @param worldIndex
+     * @param startIndex
+     * @param numFrames
+     * @param delay
+     */
+    protected void init(String id, Vector2 position, TileMap tileMap, int worldIndex, int startIndex, int numFrames, float delay) {
+        this.id = id;
+        this.position.set(position);
+        this.tileMap = tileMap;
+
+        // create tilemap animation, reusing the previous one if it is the same
+        Animation animation = rm.getAnimation(rm.sprites16x16, worldIndex, startIndex, numFrames, delay);
+        if (am == null || am.currentAnimation.getKeyFrames() != animation.getKeyFrames()) am = new AnimationManager(animation);
+        else am.currentAnimation.stop();
+        // battle scene animation is only created if a battle starts
+        battleAnimation = rm.getAnimation(rm.battleSprites96x96, worldIndex, startIndex, 2, delay);
+    }
+
+    /**
+     * Resets the state of the Enemy each time it's freed
+     * and put back into the Pool
+     */
+    @Override
+    public void reset() {
+        tileMap = null;
+        pauseAnim = false;
+        bam = null;
+        battleAnimation = null;
+
+        dead = false;
+        hp = maxHp = previousHp = 0;
+        damage = healing = 0;
+        accuracy = 0;
+        minDamage = maxDamage = 0;
+        hasShield = false;
+        shield = maxShield = prevShield = 0;
+        level = 0;
+        prevMoveUsed = moveUsed = -1;
+
+        battleSize = 48;
+        numRespawn = 0;
+    }
+
     public abstract boolean isElite();
 
     public abstract boolean isBoss();
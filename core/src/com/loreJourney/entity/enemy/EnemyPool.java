@@ -0,0 +1,92 @@
+package com.loreJourney.entity.enemy;
+
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Pool;
+import com.loreJourney.entity.Entity;
+import com.loreJourney.map.TileMap;
+import com.loreJourney.resource.ResourceManager;
+
+/**
+ * Pools of each kind of Enemy so that enemies are reused across map loads
+ * instead of being created for every map and thrown away after it
+ *
+ * @author Ming Li
+ */
+public class EnemyPool {
+
+    // kinds of enemies by numerical Entity id (2 - 15)
+    public static final String[] NAMES = {
+        null, null, "slime", "blue slime", "blast slime", "slime king", "ghost", "zombie",
+        "skeleton", "witch", "red reaper", "snow puff", "angry penguin", "yeti", "ice bat", "ice golem"
+    };
+    // the unique identifier of bosses (-1 for normal enemies)
+    public static final int[] BOSS_IDS = { -1, -1, -1, -1, -1, 0, -1, -1, -1, -1, 1, -1, -1, -1, -1, 2 };
+    // row and first frame of the enemy's animations
+    public static final int[] WORLD_INDICES = { 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 2, 3, 3, 3, 3, 3 };
+    public static final int[] START_INDICES = { 0, 0, 0, 2, 4, 6, 0, 2, 4, 6, 8, 0, 2, 4, 6, 8 };
+    public static final int NUM_FRAMES = 2;
+    public static final float DELAY = 1 / 3f;
+
+    private Pool<Normal> normals;
+    private Pool<Boss> bosses;
+
+    private Vector2 position = new Vector2();
+
+    public EnemyPool(final ResourceManager rm) {
+        normals = new Pool<Normal>() {
+            @Override
+            protected Normal newObject() {
+                return new Normal(rm);
+            }
+        };
+        bosses = new Pool<Boss>() {
+            @Override
+            protected Boss newObject() {
+                return new Boss(rm);
+            }
+        };
+    }
+
+    /**
+     * Returns an instance of an Enemy based on numerical Entity id
+     *
+     * @param id
+     * @param tileX
+     * @param tileY
+     * @param map
+     * @return
+     */
+    public Enemy obtain(int id, int tileX, int tileY, TileMap map) {
+        if (!isEnemy(id)) return null;
+        position.set(tileX * map.tileSize, tileY * map.tileSize);
+        if (BOSS_IDS[id] != -1) return boss(NAMES[id], BOSS_IDS[id], map, WORLD_INDICES[id], START_INDICES[id], NUM_FRAMES, DELAY);
+        return normal(NAMES[id], map, WORLD_INDICES[id], START_INDICES[id], NUM_FRAMES, DELAY);
+    }
+
+    private Normal normal(String id, TileMap map, int worldIndex, int startIndex, int numFrames, float delay) {
+        Normal normal = normals.obtain();
+        normal.init(id, position, map, worldIndex, startIndex, numFrames, delay);
+        return normal;
+    }
+
+    private Boss boss(String id, int bossId, TileMap map, int worldIndex, int startIndex, int numFrames, float delay) {
+        Boss boss = bosses.obtain();
+        boss.init(id, bossId, position, map, worldIndex, startIndex, numFrames, delay);
+        return boss;
+    }
+
+    public static boolean isEnemy(int id) {
+        return id >= 2 && id < NAMES.length;
+    }
+
+    /**
+     * Returns an Enemy to its pool once nothing refers to it anymore
+     *
+     * @param e
+     */
+    public void free(Entity e) {
+        if (e instanceof Normal) normals.free((Normal) e);
+        else if (e instanceof Boss) bosses.free((Boss) e);
+    }
+
+}
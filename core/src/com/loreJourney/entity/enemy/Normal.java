@@ -2,7 +2,6 @@ package com.loreJourney.entity.enemy;
 
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
-import com.loreJourney.animation.AnimationManager;
 import com.loreJourney.map.TileMap;
 import com.loreJourney.resource.ResourceManager;
 import com.loreJourney.resource.Util;
@@ -21,20 +20,25 @@ public class Normal extends Enemy {
         super(id, position, tileMap, rm);
     }
 
-    public Normal(String id, Vector2 position, TileMap tileMap, ResourceManager rm,
-                  int worldIndex, int startIndex, int numFrames, float delay) {
-        this(id, position, tileMap, rm);
+    public Normal(ResourceManager rm) {
+        super(rm);
+    }
 
-        // create tilemap animation
-        am = new AnimationManager(rm.sprites16x16, worldIndex, startIndex, numFrames, delay);
-        // create battle scene animation
-        bam = new AnimationManager(rm.battleSprites96x96, worldIndex, startIndex, 2, delay);
+    @Override
+    protected void init(String id, Vector2 position, TileMap tileMap, int worldIndex, int startIndex, int numFrames, float delay) {
+        super.init(id, position, tileMap, worldIndex, startIndex, numFrames, delay);
 
         // determine if elite
         isElite = Util.isSuccess(Util.ELITE_CHANCE);
         if (isElite) this.id = "[ELITE] " + id;
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        isElite = false;
+    }
+
     @Override
     public boolean isElite() {
         return isElite;
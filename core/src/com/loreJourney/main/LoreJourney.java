@@ -15,6 +15,8 @@ import com.loreJourney.save.Save;
 import com.loreJourney.screen.*;
 import com.loreJourney.screen.game.VictoryScreen;
 
+import java.util.concurrent.ForkJoinPool;
+
 
 /**
  * "LoreJourney" is a RPG/Dungeon Crawler based on RNG
@@ -63,6 +65,17 @@ public class LoreJourney extends Game {
     // debugging
     public Label fps;
 
+    // threads that simulate enemies in parallel (null to always update them on the render thread)
+    public final ForkJoinPool entityPool;
+
+    public LoreJourney() {
+        this(null);
+    }
+
+    public LoreJourney(ForkJoinPool entityPool) {
+        this.entityPool = entityPool;
+    }
+
 	public void create() {
         batch = new SpriteBatch();
         rm = new ResourceManager();
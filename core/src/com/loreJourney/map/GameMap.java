@@ -1,13 +1,16 @@
 package com.loreJourney.map;
 
+import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.audio.Music;
-import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.actions.Actions;
-import com.loreJourney.effects.Particle;
 import com.loreJourney.effects.ParticleFactory;
+import com.loreJourney.effects.ParticleGovernor;
+import com.loreJourney.ecs.EntityWorld;
+import com.loreJourney.entity.enemy.EnemyPool;
 import com.loreJourney.entity.Player;
 import com.loreJourney.event.EventState;
 // REMOVED: Inventory system disabled
@@ -25,6 +28,7 @@ import com.loreJourney.screen.GameScreen;
  * All maps in a world have similar themes
  * File names for maps are in the format:
  * "w[world index]_l[level index]"
+ * with a compiled ".bin" version preferred over the ".txt" version
  *
  * @author Ming Li
  */
@@ -42,10 +46,18 @@ public class GameMap {
     public TileMap tileMap;
     public Player player;
     private ParticleFactory particleFactory;
+    // scales the number of particles to the frame time
+    private ParticleGovernor particleGovernor;
+    // enemies are reused across maps
+    private EnemyPool enemyPool;
+    // enemies as components when the entity component system is enabled
+    private EntityWorld entityWorld;
     public GameScreen gameScreen;
     private ResourceManager rm;
 
     public boolean renderLight;
+    // created on the first dark map
+    private LightMap lightMap;
     private float lightningTime = 0;
     private float durationTime = 0;
 
@@ -73,6 +85,8 @@ public class GameMap {
         // REMOVED: Inventory system disabled
         // itemsObtained = new Array<Item>();
         particleFactory = new ParticleFactory(gameScreen.getCamera(), rm);
+        particleGovernor = new ParticleGovernor();
+        enemyPool = new EnemyPool(rm);
     }
 
     /**
@@ -98,10 +112,27 @@ public class GameMap {
         player.completedMap = false;
         player.getAm().setAnimation(0);
 
-        tileMap = new TileMap(16, "maps/w" + worldIndex + "_l" + levelIndex + ".txt", new Vector2(0, 0), rm);
+        // prefer the compiled map, built from the text map by tools:convertMaps, and fall back to the text map
+        String path = "maps/w" + worldIndex + "_l" + levelIndex;
+        if (Gdx.files.internal(path + MapFormat.EXTENSION).exists()) path += MapFormat.EXTENSION;
+        else path += ".txt";
+        if (tileMap != null) tileMap.dispose();
+        tileMap = new TileMap(16, path, new Vector2(0, 0), enemyPool, rm);
+        // static layers are uploaded once instead of every frame
+        if (player.settings.staticTileCache) tileMap.bakeStaticLayers();
+        tileMap.spawnRadius = player.settings.enemySpawnRadius;
+        tileMap.scheduler.offscreenInterval = player.settings.offscreenUpdateInterval;
+        tileMap.scheduler.budget = (long) (player.settings.entityUpdateBudget * 1000000);
+        tileMap.scheduler.pool = gameScreen.getGame().entityPool;
+        tileMap.scheduler.parallel = player.settings.parallelEntityUpdate;
+        if (player.settings.entityComponentSystem) {
+            if (entityWorld == null) entityWorld = new EntityWorld(rm);
+            tileMap.setEntityWorld(entityWorld);
+        }
         // set lighting
         setDarkness(tileMap.dark);
         // set weather
+        particleFactory.wrap = player.settings.wrapWeather;
         if (player.settings.showWeatherAnimations) setWeather(tileMap.weather);
         else setWeather(0);
 
@@ -127,6 +158,7 @@ public class GameMap {
 
     /**
      * Changes the weather and sets the particle factory according to the weather
+     * Each weather has a base number of particles and the bounds the count is scaled in
      *
      * @param weather
      */
@@ -134,32 +166,81 @@ public class GameMap {
         if (weather == 0) this.weather = WeatherType.NORMAL;
         else if (weather == 1) {
             this.weather = WeatherType.RAIN;
-            particleFactory.set(Particle.RAINDROP, 40, Util.RAIN_VELOCITY);
+            setParticles(ParticleFactory.RAINDROP, 40, 20, 160, Util.RAIN_VELOCITY);
         }
         else if (weather == 2) {
             this.weather = WeatherType.HEAVY_RAIN;
-            particleFactory.set(Particle.RAINDROP, 75, Util.HEAVY_RAIN_VELOCITY);
+            setParticles(ParticleFactory.RAINDROP, 75, 30, 600, Util.HEAVY_RAIN_VELOCITY);
         }
         else if (weather == 3) {
             this.weather = WeatherType.THUNDERSTORM;
-            particleFactory.set(Particle.RAINDROP, 75, Util.HEAVY_RAIN_VELOCITY);
+            setParticles(ParticleFactory.RAINDROP, 75, 30, 600, Util.HEAVY_RAIN_VELOCITY);
         }
         else if (weather == 4) {
             this.weather = WeatherType.SNOW;
-            particleFactory.set(Particle.SNOWFLAKE, 100, Util.SNOW_VELOCITY);
+            setParticles(ParticleFactory.SNOWFLAKE, 100, 40, 800, Util.SNOW_VELOCITY);
         }
         else if (weather == 5) {
             this.weather = WeatherType.BLIZZARD;
-            particleFactory.set(Particle.SNOWFLAKE, 300, Util.BLIZZARD_VELOCITY);
+            setParticles(ParticleFactory.SNOWFLAKE, 300, 100, 5000, Util.BLIZZARD_VELOCITY);
         }
     }
 
+    private void setParticles(int type, int numParticles, int min, int max, Vector2 velocity) {
+        particleFactory.set(type, numParticles, velocity);
+        particleGovernor.set(min, max, numParticles);
+    }
+
+    /**
+     * Scales the number of particles of the weather to the measured frame time
+     *
+     * @param frameTime seconds between this frame and the previous one
+     * @param workTime seconds spent updating and rendering this frame
+     */
+    public void updateParticleBudget(float frameTime, float workTime) {
+        if (weather == WeatherType.NORMAL || !player.settings.adaptiveWeather) return;
+        if (particleGovernor.update(frameTime, workTime)) particleFactory.setCount(particleGovernor.getCount());
+    }
+
     /**
      * Sets the darkness of the map
      */
     public void setDarkness(boolean isDark) {
         this.isDark = isDark;
         renderLight = isDark;
+        if (isDark) {
+            OrthographicCamera cam = gameScreen.getCamera();
+            if (lightMap == null) lightMap = new LightMap((int) cam.viewportWidth, (int) cam.viewportHeight);
+            lightMap.setTileMap(tileMap);
+        }
+        tileMap.setLightMap(isDark ? lightMap : null);
+    }
+
+    /**
+     * Renders the lights of a dark map into the light map
+     * Must be called before the batch begins the frame
+     *
+     * @param dt
+     * @param batch
+     * @param cam
+     */
+    public void renderLightMap(float dt, SpriteBatch batch, OrthographicCamera cam) {
+        if (!renderLight) return;
+        Vector2 p = player.getRenderPosition();
+        lightMap.add(p.x + 8, p.y + 8, LightMap.PLAYER_RADIUS, Color.WHITE);
+        // lightning drawn by render this frame lights up the whole view
+        lightMap.flash = isFlashing(dt) ? 1 : 0;
+        lightMap.render(batch, cam);
+    }
+
+    /**
+     * Returns whether render will draw lightning this frame
+     *
+     * @param dt
+     * @return
+     */
+    private boolean isFlashing(float dt) {
+        return weather == WeatherType.THUNDERSTORM && lightningTime >= 7 && durationTime + dt < 0.2f;
     }
 
     /**
@@ -207,6 +288,15 @@ public class GameMap {
         }*/
     }
 
+    /**
+     * Updates the enemies of the map once per rendered frame
+     *
+     * @param dt time simulated this frame
+     */
+    public void updateEntities(float dt) {
+        tileMap.updateEntities(dt);
+    }
+
     public void update(float dt) {
         player.update(dt);
         tileMap.update(dt);
@@ -215,11 +305,12 @@ public class GameMap {
         if (player.isTileInteraction()) {
             gameScreen.hud.toggle(false);
             gameScreen.setCurrentEvent(EventState.TILE_EVENT);
-            if (player.getCurrentTile().isQuestionMark()) {
+            int type = tileMap.getType(player.getTileX(), player.getTileY());
+            if (type == Tile.QUESTION_MARK) {
                 player.stats.numQuestionTiles++;
                 gameScreen.dialog.startDialog(player.getQuestionMarkDialog(avgLevel, this), EventState.MOVING, EventState.MOVING);
             }
-            else if (player.getCurrentTile().isExclamationMark()) {
+            else if (type == Tile.EXCLAMATION_MARK) {
                 player.stats.numExclamTiles++;
                 gameScreen.dialog.startDialog(player.getExclamDialog(avgLevel, this), EventState.MOVING, EventState.MOVING);
             }
@@ -287,12 +378,13 @@ public class GameMap {
     private boolean sfxPlayed = false;
 
     public void render(float dt, SpriteBatch batch, OrthographicCamera cam) {
-        tileMap.renderBottomLayer(batch, cam);
+        tileMap.setView(cam);
+        tileMap.renderBottomLayer(batch);
 
         player.render(batch);
 
-        tileMap.render(batch, cam);
-        tileMap.renderTopLayer(batch, cam);
+        tileMap.render(batch);
+        tileMap.renderTopLayer(batch);
 
         // render particles
         if (weather != WeatherType.NORMAL) particleFactory.render(batch);
@@ -302,27 +394,28 @@ public class GameMap {
             if (lightningTime >= 7) {
                 durationTime += dt;
                 if (durationTime < 0.2f) {
-                    if (isDark) renderLight = false;
                     if (!player.settings.muteSfx && !sfxPlayed) {
                         rm.thunder.play(player.settings.sfxVolume);
                         sfxPlayed = true;
                     }
-                    batch.draw(rm.lightning, player.getPosition().x - 182, player.getPosition().y - 102);
+                    batch.draw(rm.lightning, player.getRenderPosition().x - 182, player.getRenderPosition().y - 102);
                 }
                 if (durationTime > 0.2f) {
                     lightningTime = 0;
                     durationTime = 0;
                     sfxPlayed = false;
-                    if (isDark) renderLight = true;
                 }
             }
         }
 
-        if (renderLight) {
-            batch.setBlendFunction(GL20.GL_DST_COLOR, GL20.GL_ONE_MINUS_SRC_ALPHA);
-            batch.draw(rm.darkness, player.getPosition().x - 182, player.getPosition().y - 102);
-            batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
-        }
+        // the light map is drawn last so the blend function it leaves is reset after the batch ends
+        if (renderLight) lightMap.composite(batch, cam);
+    }
+
+    public void dispose() {
+        if (tileMap != null) tileMap.dispose();
+        particleFactory.dispose();
+        if (lightMap != null) lightMap.dispose();
     }
 
 }
@@ -0,0 +1,371 @@
+package com.loreJourney.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Darkens a map everywhere except around light sources.
+ *
+ * Every light is drawn additively into a low resolution FrameBuffer cleared
+ * to the color of the dark, and the FrameBuffer is then drawn over the map as
+ * a single quad that multiplies the colors under it, so a dark map costs one
+ * extra quad however many lights there are.
+ *
+ * The lights of glowing tiles are baked into a SpriteCache per chunk of the map
+ * the same way the StaticTileCache bakes static layers: only chunks near the
+ * camera are resident, and a chunk is only rebaked when one of its tiles changes,
+ * so static lights cost one draw call per visible chunk instead of a quad
+ * through the batch every frame. Lights that move, such as the player, are
+ * added through the batch every frame.
+ *
+ * @author Ming Li
+ */
+public class LightMap implements Disposable {
+
+    // the light map has a pixel for every SCALE x SCALE pixels of the screen
+    public static final int SCALE = 4;
+    public static final int CHUNK_SIZE = StaticTileCache.CHUNK_SIZE;
+
+    // the color of the dark and how much of the map shows through it
+    private static final Color AMBIENT = new Color(0x001351cd);
+    // the dark when everything is lit by lightning
+    // the composite multiplies the map by clear + 1 - alpha so a clear of alpha shows the map unchanged
+    private static final float FLASH = AMBIENT.a;
+
+    // radius of the light around the player in pixels
+    public static final float PLAYER_RADIUS = 40;
+    public static final float TILE_RADIUS = 24;
+
+    // type -> color of the light of a tile (null if the tile doesn't glow)
+    private static final Color[] TILE_LIGHTS = new Color[Tile.END + 1];
+
+    static {
+        TILE_LIGHTS[Tile.TELEPORT] = new Color(0.3f, 0.6f, 1.f, 1.f);
+        TILE_LIGHTS[Tile.END] = new Color(1.f, 0.8f, 0.4f, 1.f);
+    }
+
+    private FrameBuffer fbo;
+    // the light map as drawn over the map, flipped since FrameBuffers are upside down
+    private TextureRegion lightMap;
+    // radial falloff from the center of a light
+    private Texture light;
+
+    private TileMap map;
+    private int chunksX;
+    private int chunksY;
+    // indices of the glowing tiles of each chunk (null if the chunk is not resident)
+    private IntArray[] chunkLights;
+    private boolean[] dirty;
+    private boolean anyDirty;
+
+    // light quads of the glowing tiles of the resident chunks
+    private SpriteCache cache;
+    // the number of sprites the SpriteCache was created with
+    private int size;
+    private TextureRegion lightRegion;
+    // cache id of each chunk (-1 if the chunk is not resident)
+    private int[] chunkCache;
+    // the number of sprites each cache was first created with
+    private int[] capacity;
+    // range of resident chunks (inclusive), empty until the first render
+    private int firstChunkX;
+    private int lastChunkX = -1;
+    private int firstChunkY;
+    private int lastChunkY = -1;
+
+    // lights added for the next frame: x, y, radius, r, g, b
+    private FloatArray lights;
+    // how much the next frame is lit by lightning from 0 to 1
+    public float flash;
+
+    public LightMap(int viewWidth, int viewHeight) {
+        fbo = new FrameBuffer(Pixmap.Format.RGBA8888, viewWidth / SCALE, viewHeight / SCALE, false);
+        fbo.getColorBufferTexture().setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        lightMap = new TextureRegion(fbo.getColorBufferTexture());
+        lightMap.flip(false, true);
+
+        // the falloff is stored in the color with no alpha so lights add to the color of the light map only
+        int size = 64;
+        Pixmap pixmap = new Pixmap(size, size, Pixmap.Format.RGBA8888);
+        Pixmap.setBlending(Pixmap.Blending.None);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                float dx = (x + 0.5f) / size * 2 - 1;
+                float dy = (y + 0.5f) / size * 2 - 1;
+                float d = (float) Math.sqrt(dx * dx + dy * dy);
+                float i = d >= 1 ? 0 : MathUtils.cos(d * MathUtils.PI / 2);
+                pixmap.drawPixel(x, y, Color.rgba8888(i, i, i, 0));
+            }
+        }
+        // blending is global to every Pixmap so the default is restored
+        Pixmap.setBlending(Pixmap.Blending.SourceOver);
+        light = new Texture(pixmap);
+        light.setFilter(Texture.TextureFilter.Linear, Texture.TextureFilter.Linear);
+        lightRegion = new TextureRegion(light);
+        pixmap.dispose();
+
+        lights = new FloatArray();
+    }
+
+    /**
+     * Starts lighting a new map, its lights are baked around the camera on the next render
+     *
+     * @param map
+     */
+    public void setTileMap(TileMap map) {
+        this.map = map;
+        chunksX = (map.mapWidth + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        chunksY = (map.mapHeight + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        if (chunkLights == null || chunkLights.length < chunksX * chunksY) {
+            chunkLights = new IntArray[chunksX * chunksY];
+            dirty = new boolean[chunksX * chunksY];
+            chunkCache = new int[chunksX * chunksY];
+            capacity = new int[chunksX * chunksY];
+        }
+        java.util.Arrays.fill(chunkLights, null);
+        java.util.Arrays.fill(chunkCache, -1);
+        lastChunkX = lastChunkY = -1;
+        anyDirty = false;
+    }
+
+    /**
+     * Marks the chunk containing a changed tile to be rebaked before it is drawn next
+     *
+     * @param tileX
+     * @param tileY
+     */
+    public void invalidate(int tileX, int tileY) {
+        int chunk = (tileY / CHUNK_SIZE) * chunksX + tileX / CHUNK_SIZE;
+        // evicted chunks are baked from the current tiles when they become resident again
+        if (!isResident(chunk)) return;
+        dirty[chunk] = true;
+        anyDirty = true;
+    }
+
+    private boolean isResident(int chunk) {
+        int cx = chunk % chunksX;
+        int cy = chunk / chunksX;
+        return cx >= firstChunkX && cx <= lastChunkX && cy >= firstChunkY && cy <= lastChunkY;
+    }
+
+    /**
+     * Makes a range of chunks resident, rebaking around them if any of them is not resident yet
+     *
+     * @param fx
+     * @param lx
+     * @param fy
+     * @param ly
+     */
+    private void updateResidency(int fx, int lx, int fy, int ly) {
+        if (fx >= firstChunkX && lx <= lastChunkX && fy >= firstChunkY && ly <= lastChunkY) return;
+
+        firstChunkX = Math.max(0, fx - StaticTileCache.RESIDENT_MARGIN);
+        lastChunkX = Math.min(chunksX - 1, lx + StaticTileCache.RESIDENT_MARGIN);
+        firstChunkY = Math.max(0, fy - StaticTileCache.RESIDENT_MARGIN);
+        lastChunkY = Math.min(chunksY - 1, ly + StaticTileCache.RESIDENT_MARGIN);
+        bake();
+    }
+
+    /**
+     * Evicts every chunk and bakes the chunks in the resident range
+     * The SpriteCache is only recreated if the resident chunks need more sprites than it holds
+     */
+    private void bake() {
+        int total = 0;
+        for (int cy = firstChunkY; cy <= lastChunkY; cy++) {
+            for (int cx = firstChunkX; cx <= lastChunkX; cx++) {
+                int chunk = cy * chunksX + cx;
+                findLights(chunk);
+                total += chunkLights[chunk].size;
+            }
+        }
+
+        if (cache == null || total > size) {
+            if (cache != null) cache.dispose();
+            size = Math.max(total, 1);
+            cache = new SpriteCache(size, size <= StaticTileCache.MAX_INDEXED_SPRITES);
+        }
+        else cache.clear();
+
+        // the lights of evicted chunks are found again when they become resident
+        for (int chunk = 0; chunk < chunksX * chunksY; chunk++) {
+            if (chunkLights[chunk] != null && !isResident(chunk)) chunkLights[chunk] = null;
+        }
+        java.util.Arrays.fill(chunkCache, -1);
+        for (int cy = firstChunkY; cy <= lastChunkY; cy++) {
+            for (int cx = firstChunkX; cx <= lastChunkX; cx++) {
+                int chunk = cy * chunksX + cx;
+                capacity[chunk] = chunkLights[chunk].size;
+                if (capacity[chunk] != 0) chunkCache[chunk] = bakeChunk(-1, chunk);
+            }
+        }
+        java.util.Arrays.fill(dirty, false);
+        anyDirty = false;
+    }
+
+    /**
+     * Finds the lights of changed chunks again and rebakes them in place
+     * A cache can only be redefined with at most as many sprites as it was
+     * created with so every resident chunk is rebaked if a chunk gained lights
+     */
+    private void rebakeDirty() {
+        for (int chunk = 0; chunk < chunksX * chunksY; chunk++) {
+            if (!dirty[chunk]) continue;
+            findLights(chunk);
+            if (chunkLights[chunk].size > capacity[chunk]) {
+                bake();
+                return;
+            }
+            if (chunkCache[chunk] != -1) bakeChunk(chunkCache[chunk], chunk);
+        }
+        anyDirty = false;
+    }
+
+    /**
+     * Adds the light quads of a chunk to a new cache or redefines an existing one
+     *
+     * @param cacheID the cache to redefine or -1 for a new cache
+     * @param chunk
+     * @return the cache id
+     */
+    private int bakeChunk(int cacheID, int chunk) {
+        if (cacheID == -1) cache.beginCache();
+        else cache.beginCache(cacheID);
+        IntArray tiles = chunkLights[chunk];
+        for (int i = 0; i < tiles.size; i++) {
+            int k = tiles.get(i);
+            int tileX = k % map.mapWidth;
+            int tileY = k / map.mapWidth;
+            float x = map.origin.x + (tileX + 0.5f) * map.tileSize;
+            float y = map.origin.y + (tileY + 0.5f) * map.tileSize;
+            cache.setColor(TILE_LIGHTS[map.getType(tileX, tileY)]);
+            cache.add(lightRegion, x - TILE_RADIUS, y - TILE_RADIUS, 2 * TILE_RADIUS, 2 * TILE_RADIUS);
+        }
+        return cache.endCache();
+    }
+
+    private void findLights(int chunk) {
+        IntArray out = chunkLights[chunk];
+        if (out == null) out = chunkLights[chunk] = new IntArray();
+        out.clear();
+        MapChunk tiles = map.getChunkAt(chunk % chunksX, chunk / chunksX);
+        for (int r = tiles.y; r < tiles.y + tiles.height; r++) {
+            for (int c = tiles.x; c < tiles.x + tiles.width; c++) {
+                if (TILE_LIGHTS[tiles.types[tiles.index(c, r)]] != null) out.add(r * map.mapWidth + c);
+            }
+        }
+        dirty[chunk] = false;
+    }
+
+    /**
+     * Adds a light for the next frame
+     *
+     * @param x center in map coordinates
+     * @param y
+     * @param radius
+     * @param color
+     */
+    public void add(float x, float y, float radius, Color color) {
+        lights.add(x);
+        lights.add(y);
+        lights.add(radius);
+        lights.add(color.r);
+        lights.add(color.g);
+        lights.add(color.b);
+    }
+
+    /**
+     * Draws every light into the light map
+     * Must be called outside of batch.begin and batch.end
+     *
+     * @param batch
+     * @param cam
+     */
+    public void render(SpriteBatch batch, OrthographicCamera cam) {
+        float ambient = flash * FLASH;
+        fbo.begin();
+        Gdx.gl.glClearColor(Math.max(AMBIENT.r, ambient), Math.max(AMBIENT.g, ambient), Math.max(AMBIENT.b, ambient), AMBIENT.a);
+        Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        // the screen is cleared with the default color
+        Gdx.gl.glClearColor(0, 0, 0, 0);
+
+        // chunks of tiles whose light reaches the view
+        float left = cam.position.x - cam.viewportWidth / 2 - TILE_RADIUS;
+        float bottom = cam.position.y - cam.viewportHeight / 2 - TILE_RADIUS;
+        int firstX = Math.max(0, (int) ((left - map.origin.x) / map.tileSize) / CHUNK_SIZE);
+        int firstY = Math.max(0, (int) ((bottom - map.origin.y) / map.tileSize) / CHUNK_SIZE);
+        int lastX = Math.min(chunksX - 1, (int) ((left + cam.viewportWidth + 2 * TILE_RADIUS - map.origin.x) / map.tileSize) / CHUNK_SIZE);
+        int lastY = Math.min(chunksY - 1, (int) ((bottom + cam.viewportHeight + 2 * TILE_RADIUS - map.origin.y) / map.tileSize) / CHUNK_SIZE);
+        if (firstX <= lastX && firstY <= lastY) {
+            updateResidency(firstX, lastX, firstY, lastY);
+            if (anyDirty) rebakeDirty();
+
+            Gdx.gl.glEnable(GL20.GL_BLEND);
+            Gdx.gl.glBlendFunc(GL20.GL_ONE, GL20.GL_ONE);
+            cache.setProjectionMatrix(cam.combined);
+            cache.begin();
+            for (int cy = firstY; cy <= lastY; cy++) {
+                for (int cx = firstX; cx <= lastX; cx++) {
+                    int chunk = cy * chunksX + cx;
+                    if (chunkCache[chunk] != -1 && chunkLights[chunk].size > 0) cache.draw(chunkCache[chunk]);
+                }
+            }
+            cache.end();
+            Gdx.gl.glDisable(GL20.GL_BLEND);
+        }
+
+        float color = batch.getPackedColor();
+        batch.setBlendFunction(GL20.GL_ONE, GL20.GL_ONE);
+        batch.setProjectionMatrix(cam.combined);
+        batch.begin();
+        // lights added this frame
+        for (int i = 0; i < lights.size; i += 6) {
+            batch.setColor(lights.get(i + 3), lights.get(i + 4), lights.get(i + 5), 1);
+            draw(batch, lights.get(i), lights.get(i + 1), lights.get(i + 2));
+        }
+        lights.clear();
+
+        batch.end();
+        batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        batch.setColor(color);
+        fbo.end();
+    }
+
+    private void draw(SpriteBatch batch, float x, float y, float radius) {
+        batch.draw(light, x - radius, y - radius, 2 * radius, 2 * radius);
+    }
+
+    /**
+     * Draws the light map over the view in a single quad
+     * The batch is left multiplying what it draws with the colors under it,
+     * its blend function should be reset after batch.end so that no extra flush is needed
+     *
+     * @param batch
+     * @param cam
+     */
+    public void composite(SpriteBatch batch, OrthographicCamera cam) {
+        batch.setBlendFunction(GL20.GL_DST_COLOR, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        batch.draw(lightMap, cam.position.x - cam.viewportWidth / 2, cam.position.y - cam.viewportHeight / 2,
+            cam.viewportWidth, cam.viewportHeight);
+    }
+
+    @Override
+    public void dispose() {
+        fbo.dispose();
+        light.dispose();
+        if (cache != null) cache.dispose();
+    }
+
+}
@@ -0,0 +1,203 @@
+package com.loreJourney.map;
+
+import com.badlogic.gdx.utils.Bits;
+import com.badlogic.gdx.utils.IntIntMap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The tiles of a square of SIZE x SIZE tiles of a TileMap that is resident
+ * in memory, stored as parallel primitive arrays indexed by
+ * (tileY - y) * SIZE + (tileX - x). Chunks on the right and top edges
+ * of the map may cover fewer tiles than SIZE on each axis.
+ *
+ * A chunk also holds the spawns of its tiles and the movement of the
+ * TransitionTable from its tiles, which is computed when first needed.
+ *
+ * Chunks are reused through TileMap once they are evicted. A chunk whose
+ * tiles or spawns changed is kept as deflated bytes while it is evicted,
+ * any other chunk is read from the map file again.
+ *
+ * @author Ming Li
+ */
+class MapChunk {
+
+    static final int SIZE = MapFormat.CHUNK_SIZE;
+
+    // index of the chunk in the chunks of the map
+    int index;
+    // tile coordinates of the bottom left tile
+    int x;
+    int y;
+    // the number of tiles of the chunk on each axis
+    int width;
+    int height;
+
+    // tile index of the bottom layer (-1 for no tile)
+    final short[] bottomLayer = new short[SIZE * SIZE];
+    // tile ids of the tile map layer (-1 for no tile, animIndex + 96 for animated tiles)
+    final short[] tiles = new short[SIZE * SIZE];
+    // tile types (see Tile)
+    final byte[] types = new byte[SIZE * SIZE];
+    // animation kind of animated tiles (-1 for non animated tiles)
+    final short[] anims = new short[SIZE * SIZE];
+    // tile index of the top layer (-1 for no tile)
+    final short[] topLayer = new short[SIZE * SIZE];
+    // one bit per tile set if the tile is blocked
+    final Bits collisionMap = new Bits(SIZE * SIZE);
+
+    // entity ids of enemies that have not been created yet by tile index into the whole map
+    final IntIntMap spawns = new IntIntMap();
+
+    // bits of the directions a step can be taken in from each tile (see TransitionTable)
+    final byte[] exits = new byte[SIZE * SIZE];
+    boolean hasExits;
+    // index << 2 | incoming direction -> tile index into the whole map the slide ends on, only for ice tiles
+    final IntIntMap slides = new IntIntMap();
+
+    // whether the tiles or spawns differ from the map file
+    boolean modified;
+
+    /**
+     * Empties the chunk so it can hold another chunk of a map
+     *
+     * @param index
+     * @param chunksX the number of chunks in a row of the map
+     * @param mapWidth
+     * @param mapHeight
+     */
+    void reset(int index, int chunksX, int mapWidth, int mapHeight) {
+        this.index = index;
+        x = (index % chunksX) * SIZE;
+        y = (index / chunksX) * SIZE;
+        width = Math.min(SIZE, mapWidth - x);
+        height = Math.min(SIZE, mapHeight - y);
+
+        java.util.Arrays.fill(bottomLayer, (short) -1);
+        java.util.Arrays.fill(tiles, (short) -1);
+        java.util.Arrays.fill(types, Tile.NORMAL);
+        java.util.Arrays.fill(anims, (short) -1);
+        java.util.Arrays.fill(topLayer, (short) -1);
+        collisionMap.clear();
+        spawns.clear();
+        hasExits = false;
+        slides.clear();
+        modified = false;
+    }
+
+    /**
+     * Returns the index of a tile of the chunk into the chunk's arrays
+     *
+     * @param tileX
+     * @param tileY
+     * @return
+     */
+    int index(int tileX, int tileY) {
+        return (tileY - y) * SIZE + tileX - x;
+    }
+
+    /**
+     * Returns the index into the whole map of a tile of the chunk
+     *
+     * @param i index into the chunk
+     * @param mapWidth
+     * @return
+     */
+    int tileIndex(int i, int mapWidth) {
+        return (y + i / SIZE) * mapWidth + x + i % SIZE;
+    }
+
+    /**
+     * Stores a tile in the tile map layer and classifies it
+     *
+     * @param i index into the chunk
+     * @param id tile id
+     * @param anim animation kind or -1 if the tile is not animated
+     */
+    void set(int i, int id, int anim) {
+        tiles[i] = (short) id;
+        anims[i] = (short) anim;
+        types[i] = (byte) TileRegistry.getType(id, anim != -1);
+        if (types[i] == Tile.BLOCKED) collisionMap.set(i);
+        else collisionMap.clear(i);
+    }
+
+    /**
+     * Whether a tile is drawn from the static tile sheet
+     * ie. it has a texture and is not animated
+     *
+     * @param i index into the chunk
+     * @return
+     */
+    boolean isStaticTile(int i) {
+        return anims[i] == -1 && tiles[i] != -1;
+    }
+
+    /**
+     * Writes the layers and spawns of the chunk as deflated bytes
+     * The types and collision map are left out since they follow from the tiles
+     *
+     * @param deflater reset before it is used
+     * @return
+     */
+    byte[] compact(Deflater deflater) {
+        deflater.reset();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater));
+        try {
+            for (int i = 0; i < SIZE * SIZE; i++) {
+                out.writeShort(bottomLayer[i]);
+                out.writeShort(tiles[i]);
+                out.writeShort(anims[i]);
+                out.writeShort(topLayer[i]);
+            }
+            out.writeShort(spawns.size);
+            for (IntIntMap.Entry spawn : spawns.entries()) {
+                out.writeInt(spawn.key);
+                out.writeShort(spawn.value);
+            }
+            out.close();
+        } catch (IOException e) {
+            // cannot happen when writing to memory
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the layers and spawns written by compact into a chunk that was just reset
+     *
+     * @param compact
+     * @param inflater reset before it is used
+     */
+    void restore(byte[] compact, Inflater inflater) {
+        inflater.reset();
+        DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(compact), inflater));
+        try {
+            for (int i = 0; i < SIZE * SIZE; i++) {
+                bottomLayer[i] = in.readShort();
+                int id = in.readShort();
+                int anim = in.readShort();
+                set(i, id, anim);
+                topLayer[i] = in.readShort();
+            }
+            int numSpawns = in.readShort();
+            for (int i = 0; i < numSpawns; i++) {
+                int k = in.readInt();
+                spawns.put(k, in.readShort());
+            }
+        } catch (IOException e) {
+            // cannot happen when reading from memory
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
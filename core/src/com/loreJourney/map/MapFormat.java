@@ -0,0 +1,201 @@
+package com.loreJourney.map;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Describes the compiled binary map format and converts text maps into it.
+ * A compiled map is read by TileMap straight into its chunks
+ * without creating any intermediate Strings.
+ *
+ * All values are big endian. A compiled map has the format:
+ *
+ * int   magic ('L', 'J', 'M', 'P')
+ * short version
+ * short mapWidth
+ * short mapHeight
+ * short playerSpawn.x
+ * short playerSpawn.y
+ * byte  light (0 - daytime, 1 - nighttime)
+ * byte  weather (same values as the text format)
+ * byte  topLayer (0 - no top layer, 1 - top layer)
+ * byte  reserved
+ * short numAnimations
+ * numAnimations * (byte animIndex, byte numFrames, byte framesPerSecond)
+ * int[numChunks + 1] offset of each chunk from the start of the file
+ * numChunks * chunk
+ *
+ * The map is split into chunks of CHUNK_SIZE x CHUNK_SIZE tiles stored row
+ * by row from the bottom left chunk, so numChunks is
+ * ceil(mapWidth / CHUNK_SIZE) * ceil(mapHeight / CHUNK_SIZE) and the chunks
+ * on the right and top edges of the map may be smaller. The offsets let
+ * TileMap read only the chunks near the camera. A chunk of width x height
+ * tiles has the format:
+ *
+ * short[width * height] bottomLayer
+ * short[width * height] tileMap
+ * short numEntities
+ * numEntities * (short tile, short entityID)
+ * (if top layer)
+ * short[width * height] topLayer
+ *
+ * Layers are stored bottom row first and an entity's tile is
+ * (tileY % CHUNK_SIZE) * CHUNK_SIZE + tileX % CHUNK_SIZE.
+ *
+ * Layer values are the tile ids used in text maps (0 for no tile).
+ * In the tileMap layer a negative value -(n + 1) refers to the nth entry of
+ * the animation table, and tiles holding an Entity are stored as 0 with
+ * the Entity listed in the entities of the chunk.
+ *
+ * @author Ming Li
+ */
+public class MapFormat {
+
+    public static final int MAGIC = 0x4C4A4D50;
+    public static final short VERSION = 2;
+    public static final String EXTENSION = ".bin";
+
+    // size of everything before the animation table in bytes
+    public static final int HEADER_SIZE = 18;
+    // chunk width and height in tiles
+    public static final int CHUNK_SIZE = 16;
+
+    /**
+     * Converts the contents of a text map into the compiled binary format
+     *
+     * @param mapInfo the bytes of the text map
+     * @return the compiled map
+     */
+    public static byte[] compile(byte[] mapInfo) {
+        MapTokenizer in = new MapTokenizer(mapInfo);
+        int mapWidth = in.nextInt();
+        int mapHeight = in.nextInt();
+        int spawnX = in.nextInt();
+        int spawnY = in.nextInt();
+        int light = in.nextInt();
+        int weather = in.nextInt();
+        int size = mapWidth * mapHeight;
+
+        short[] bottomLayer = new short[size];
+        short[] tileMap = new short[size];
+        short[] topLayer = new short[size];
+        // (animIndex, numFrames, fps) triples
+        int[] animations = new int[size * 3];
+        int numAnimations = 0;
+        // entity id of each tile (0 for no Entity)
+        short[] entities = new short[size];
+
+        // text rows are stored top row first
+        for (int r = mapHeight - 1; r >= 0; r--) {
+            for (int c = 0; c < mapWidth; c++) {
+                bottomLayer[r * mapWidth + c] = (short) in.nextInt();
+            }
+        }
+
+        for (int r = mapHeight - 1; r >= 0; r--) {
+            for (int c = 0; c < mapWidth; c++) {
+                int k = r * mapWidth + c;
+                byte type = in.next();
+                if (type == MapTokenizer.ENTITY) {
+                    entities[k] = (short) in.value;
+                }
+                else if (type == MapTokenizer.ANIMATED) {
+                    // reuse an identical animation table entry
+                    int n = 0;
+                    while (n < numAnimations && (animations[n * 3] != in.animIndex ||
+                        animations[n * 3 + 1] != in.numFrames || animations[n * 3 + 2] != in.fps)) n++;
+                    if (n == numAnimations) {
+                        animations[n * 3] = in.animIndex;
+                        animations[n * 3 + 1] = in.numFrames;
+                        animations[n * 3 + 2] = in.fps;
+                        numAnimations++;
+                    }
+                    tileMap[k] = (short) -(n + 1);
+                }
+                else {
+                    tileMap[k] = (short) in.value;
+                }
+            }
+        }
+
+        boolean hasTopLayer = in.nextInt() == 1;
+        if (hasTopLayer) {
+            for (int r = mapHeight - 1; r >= 0; r--) {
+                for (int c = 0; c < mapWidth; c++) {
+                    topLayer[r * mapWidth + c] = (short) in.nextInt();
+                }
+            }
+        }
+
+        int chunksX = (mapWidth + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int chunksY = (mapHeight + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int numChunks = chunksX * chunksY;
+        int base = HEADER_SIZE + 2 + numAnimations * 3 + (numChunks + 1) * 4;
+        int[] offsets = new int[numChunks + 1];
+
+        ByteArrayOutputStream chunkBytes = new ByteArrayOutputStream(size * 6);
+        DataOutputStream chunks = new DataOutputStream(chunkBytes);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(base + size * 6);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            for (int chunk = 0; chunk < numChunks; chunk++) {
+                offsets[chunk] = base + chunks.size();
+                int x0 = (chunk % chunksX) * CHUNK_SIZE;
+                int y0 = (chunk / chunksX) * CHUNK_SIZE;
+                int x1 = Math.min(x0 + CHUNK_SIZE, mapWidth);
+                int y1 = Math.min(y0 + CHUNK_SIZE, mapHeight);
+
+                writeLayer(chunks, bottomLayer, mapWidth, x0, y0, x1, y1);
+                writeLayer(chunks, tileMap, mapWidth, x0, y0, x1, y1);
+                int numEntities = 0;
+                for (int r = y0; r < y1; r++) {
+                    for (int c = x0; c < x1; c++) {
+                        if (entities[r * mapWidth + c] != 0) numEntities++;
+                    }
+                }
+                chunks.writeShort(numEntities);
+                for (int r = y0; r < y1; r++) {
+                    for (int c = x0; c < x1; c++) {
+                        if (entities[r * mapWidth + c] == 0) continue;
+                        chunks.writeShort((r - y0) * CHUNK_SIZE + c - x0);
+                        chunks.writeShort(entities[r * mapWidth + c]);
+                    }
+                }
+                if (hasTopLayer) writeLayer(chunks, topLayer, mapWidth, x0, y0, x1, y1);
+            }
+            offsets[numChunks] = base + chunks.size();
+
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(mapWidth);
+            out.writeShort(mapHeight);
+            out.writeShort(spawnX);
+            out.writeShort(spawnY);
+            out.writeByte(light);
+            out.writeByte(weather);
+            out.writeByte(hasTopLayer ? 1 : 0);
+            out.writeByte(0);
+
+            out.writeShort(numAnimations);
+            for (int i = 0; i < numAnimations * 3; i++) out.writeByte(animations[i]);
+            for (int offset : offsets) out.writeInt(offset);
+            chunkBytes.writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            // cannot happen when writing to memory
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the tiles of a layer inside a chunk row by row
+     */
+    private static void writeLayer(DataOutputStream out, short[] layer, int mapWidth, int x0, int y0, int x1, int y1) throws IOException {
+        for (int r = y0; r < y1; r++) {
+            for (int c = x0; c < x1; c++) out.writeShort(layer[r * mapWidth + c]);
+        }
+    }
+
+}
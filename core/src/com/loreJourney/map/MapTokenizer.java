@@ -0,0 +1,123 @@
+package com.loreJourney.map;
+
+/**
+ * Walks the bytes of a text map once, decoding each comma or newline
+ * separated token in place without creating any Strings.
+ *
+ * A token is one of:
+ * - an integer
+ * - e[entityID]
+ * - a[animIndex]|[numFrames]|[framesPerSecond]
+ *
+ * Spaces and tabs inside a token are ignored so map files can be
+ * made more readable with spaces.
+ *
+ * @author Ming Li
+ */
+public class MapTokenizer {
+
+    // types of tokens
+    public static final byte NUMBER = 0;
+    public static final byte ENTITY = 1;
+    public static final byte ANIMATED = 2;
+
+    private final byte[] bytes;
+    private int pos;
+
+    // the value of the last token (tile id or entity id)
+    public int value;
+    // the animation of the last animated token
+    public int animIndex;
+    public int numFrames;
+    public int fps;
+
+    public MapTokenizer(byte[] bytes) {
+        this.bytes = bytes;
+        this.pos = 0;
+    }
+
+    /**
+     * Reads the next token which must be an integer
+     *
+     * @return the integer
+     */
+    public int nextInt() {
+        if (next() != NUMBER) throw error("Expected a number");
+        return value;
+    }
+
+    /**
+     * Reads the next token, storing its contents in value or the animation fields
+     *
+     * @return the type of the token
+     */
+    public byte next() {
+        // skip separators
+        while (pos < bytes.length && isSeparator(bytes[pos])) pos++;
+        if (pos >= bytes.length) throw error("Unexpected end of map");
+
+        byte type;
+        if (bytes[pos] == 'e') {
+            pos++;
+            type = ENTITY;
+            value = readNumber();
+        }
+        else if (bytes[pos] == 'a') {
+            pos++;
+            type = ANIMATED;
+            animIndex = readNumber();
+            expect('|');
+            numFrames = readNumber();
+            expect('|');
+            fps = readNumber();
+            value = animIndex + 96;
+        }
+        else {
+            type = NUMBER;
+            value = readNumber();
+        }
+
+        // the rest of the token must be blank
+        skipBlanks();
+        if (pos < bytes.length && !isSeparator(bytes[pos])) throw error("Unexpected character");
+        return type;
+    }
+
+    private int readNumber() {
+        skipBlanks();
+        boolean negative = false;
+        if (pos < bytes.length && bytes[pos] == '-') {
+            negative = true;
+            pos++;
+        }
+        int start = pos;
+        int n = 0;
+        while (pos < bytes.length) {
+            byte b = bytes[pos];
+            if (b >= '0' && b <= '9') n = n * 10 + (b - '0');
+            else if (b != ' ' && b != '\t') break;
+            pos++;
+        }
+        if (pos == start) throw error("Expected a number");
+        return negative ? -n : n;
+    }
+
+    private void expect(char c) {
+        skipBlanks();
+        if (pos >= bytes.length || bytes[pos] != c) throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private void skipBlanks() {
+        while (pos < bytes.length && (bytes[pos] == ' ' || bytes[pos] == '\t')) pos++;
+    }
+
+    private boolean isSeparator(byte b) {
+        return b == ',' || b == '\n' || b == '\r' || b == ' ' || b == '\t';
+    }
+
+    private NumberFormatException error(String message) {
+        return new NumberFormatException(message + " at byte " + pos + " of map");
+    }
+
+}
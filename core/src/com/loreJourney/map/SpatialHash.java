@@ -0,0 +1,301 @@
+package com.loreJourney.map;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.loreJourney.entity.Entity;
+
+/**
+ * A uniform grid of cells that each hold any number of entities.
+ *
+ * Every entity has a point in map coordinates and is kept in a doubly linked
+ * list of the cell containing that point, so inserting, moving and removing
+ * an entity and finding the entities of a cell take constant time.
+ * The lists are stored in arrays indexed by a handle per entity and
+ * queries write into an Array supplied by the caller so they allocate nothing.
+ * Only the cells holding entities have a list, so a grid covering a large map
+ * costs memory by the entities in it rather than by its cells.
+ *
+ * @author Ming Li
+ */
+public class SpatialHash {
+
+    public final int cols;
+    public final int rows;
+    public final int cellSize;
+
+    // cell -> first handle of the cell, empty cells have no entry
+    private IntIntMap heads;
+
+    // by handle
+    private Entity[] items;
+    private float[] xs;
+    private float[] ys;
+    private int[] cells;
+    private int[] next;
+    private int[] prev;
+
+    // entity -> handle
+    private ObjectIntMap<Entity> handles;
+    // handles of removed entities linked through next
+    private int free = -1;
+    // handles that have been used at least once
+    private int used;
+
+    public SpatialHash(int cols, int rows, int cellSize) {
+        this.cols = cols;
+        this.rows = rows;
+        this.cellSize = cellSize;
+
+        heads = new IntIntMap();
+        handles = new ObjectIntMap<Entity>();
+        resize(16);
+    }
+
+    private void resize(int capacity) {
+        items = java.util.Arrays.copyOf(items == null ? new Entity[0] : items, capacity);
+        xs = java.util.Arrays.copyOf(xs == null ? new float[0] : xs, capacity);
+        ys = java.util.Arrays.copyOf(ys == null ? new float[0] : ys, capacity);
+        cells = java.util.Arrays.copyOf(cells == null ? new int[0] : cells, capacity);
+        next = java.util.Arrays.copyOf(next == null ? new int[0] : next, capacity);
+        prev = java.util.Arrays.copyOf(prev == null ? new int[0] : prev, capacity);
+    }
+
+    /**
+     * Returns the cell containing a point, points outside the grid belong to the nearest edge cell
+     *
+     * @param x map coordinates
+     * @param y
+     * @return
+     */
+    public int getCell(float x, float y) {
+        int c = Math.min(Math.max((int) Math.floor(x / cellSize), 0), cols - 1);
+        int r = Math.min(Math.max((int) Math.floor(y / cellSize), 0), rows - 1);
+        return r * cols + c;
+    }
+
+    /**
+     * Adds an Entity at a point or moves it there if it is already in the grid
+     *
+     * @param e
+     * @param x map coordinates
+     * @param y
+     */
+    public void insert(Entity e, float x, float y) {
+        if (handles.containsKey(e)) {
+            move(e, x, y);
+            return;
+        }
+        int h;
+        if (free != -1) {
+            h = free;
+            free = next[h];
+        }
+        else {
+            if (used == items.length) resize(used * 2);
+            h = used++;
+        }
+        items[h] = e;
+        xs[h] = x;
+        ys[h] = y;
+        handles.put(e, h);
+        link(h, getCell(x, y));
+    }
+
+    /**
+     * Moves an Entity in the grid to a new point
+     *
+     * @param e
+     * @param x map coordinates
+     * @param y
+     */
+    public void move(Entity e, float x, float y) {
+        int h = handles.get(e, -1);
+        if (h == -1) return;
+        xs[h] = x;
+        ys[h] = y;
+        int cell = getCell(x, y);
+        if (cell == cells[h]) return;
+        unlink(h);
+        link(h, cell);
+    }
+
+    /**
+     * Removes an Entity from the grid
+     *
+     * @param e
+     * @return whether the Entity was in the grid
+     */
+    public boolean remove(Entity e) {
+        int h = handles.remove(e, -1);
+        if (h == -1) return false;
+        unlink(h);
+        items[h] = null;
+        next[h] = free;
+        free = h;
+        return true;
+    }
+
+    private void link(int h, int cell) {
+        int head = heads.get(cell, -1);
+        cells[h] = cell;
+        prev[h] = -1;
+        next[h] = head;
+        if (head != -1) prev[head] = h;
+        heads.put(cell, h);
+    }
+
+    private void unlink(int h) {
+        if (prev[h] != -1) next[prev[h]] = next[h];
+        else if (next[h] != -1) heads.put(cells[h], next[h]);
+        else heads.remove(cells[h], -1);
+        if (next[h] != -1) prev[next[h]] = prev[h];
+    }
+
+    public boolean contains(Entity e) {
+        return handles.containsKey(e);
+    }
+
+    /**
+     * Returns the cell an Entity is in
+     *
+     * @param e
+     * @return row * cols + col or -1 if the Entity is not in the grid
+     */
+    public int cellOf(Entity e) {
+        int h = handles.get(e, -1);
+        return h == -1 ? -1 : cells[h];
+    }
+
+    /**
+     * Returns the most recently placed Entity of a cell
+     *
+     * @param col
+     * @param row
+     * @return null if the cell is empty or outside the grid
+     */
+    public Entity first(int col, int row) {
+        if (col < 0 || col >= cols || row < 0 || row >= rows) return null;
+        int h = heads.get(row * cols + col, -1);
+        return h == -1 ? null : items[h];
+    }
+
+    /**
+     * Returns the number of entities in a cell
+     *
+     * @param col
+     * @param row
+     * @return
+     */
+    public int count(int col, int row) {
+        if (col < 0 || col >= cols || row < 0 || row >= rows) return 0;
+        int n = 0;
+        for (int h = heads.get(row * cols + col, -1); h != -1; h = next[h]) n++;
+        return n;
+    }
+
+    /**
+     * Adds the entities of every cell in a range of cells (inclusive) to out
+     * Cells are visited row by row from the lowest row and column
+     *
+     * @param col0
+     * @param row0
+     * @param col1
+     * @param row1
+     * @param out
+     * @return the number of entities added
+     */
+    public int query(int col0, int row0, int col1, int row1, Array<Entity> out) {
+        col0 = Math.max(col0, 0);
+        row0 = Math.max(row0, 0);
+        col1 = Math.min(col1, cols - 1);
+        row1 = Math.min(row1, rows - 1);
+        int n = 0;
+        for (int r = row0; r <= row1; r++) {
+            for (int c = col0; c <= col1; c++) {
+                for (int h = heads.get(r * cols + c, -1); h != -1; h = next[h]) {
+                    out.add(items[h]);
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Adds the entities whose points are inside a rectangle to out
+     *
+     * @param x map coordinates of the rectangle
+     * @param y
+     * @param width
+     * @param height
+     * @param out
+     * @return the number of entities added
+     */
+    public int query(float x, float y, float width, float height, Array<Entity> out) {
+        int col0 = (int) Math.floor(x / cellSize);
+        int row0 = (int) Math.floor(y / cellSize);
+        int col1 = (int) Math.floor((x + width) / cellSize);
+        int row1 = (int) Math.floor((y + height) / cellSize);
+        col0 = Math.max(col0, 0);
+        row0 = Math.max(row0, 0);
+        col1 = Math.min(col1, cols - 1);
+        row1 = Math.min(row1, rows - 1);
+        int n = 0;
+        for (int r = row0; r <= row1; r++) {
+            for (int c = col0; c <= col1; c++) {
+                for (int h = heads.get(r * cols + c, -1); h != -1; h = next[h]) {
+                    if (xs[h] >= x && xs[h] <= x + width && ys[h] >= y && ys[h] <= y + height) {
+                        out.add(items[h]);
+                        n++;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Adds the entities whose points are within a radius of a point to out
+     *
+     * @param x map coordinates of the center
+     * @param y
+     * @param radius
+     * @param out
+     * @return the number of entities added
+     */
+    public int queryRadius(float x, float y, float radius, Array<Entity> out) {
+        int col0 = Math.max((int) Math.floor((x - radius) / cellSize), 0);
+        int row0 = Math.max((int) Math.floor((y - radius) / cellSize), 0);
+        int col1 = Math.min((int) Math.floor((x + radius) / cellSize), cols - 1);
+        int row1 = Math.min((int) Math.floor((y + radius) / cellSize), rows - 1);
+        float r2 = radius * radius;
+        int n = 0;
+        for (int r = row0; r <= row1; r++) {
+            for (int c = col0; c <= col1; c++) {
+                for (int h = heads.get(r * cols + c, -1); h != -1; h = next[h]) {
+                    float dx = xs[h] - x;
+                    float dy = ys[h] - y;
+                    if (dx * dx + dy * dy <= r2) {
+                        out.add(items[h]);
+                        n++;
+                    }
+                }
+            }
+        }
+        return n;
+    }
+
+    public int size() {
+        return handles.size;
+    }
+
+    public void clear() {
+        heads.clear();
+        java.util.Arrays.fill(items, 0, used, null);
+        handles.clear();
+        free = -1;
+        used = 0;
+    }
+
+}
@@ -0,0 +1,312 @@
+package com.loreJourney.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Bakes the static layers of a TileMap into a SpriteCache so that their
+ * geometry is uploaded once at map load instead of every frame.
+ *
+ * Every chunk of the map (see TileMap.CHUNK_SIZE) has two caches:
+ * - below: the bottom layer and non animated special tiles (drawn under the player)
+ * - above: non animated regular tiles and the top layer (drawn over the player)
+ *
+ * Only chunks near the camera are resident in the SpriteCache. When the camera
+ * leaves the resident area the cache is rebuilt around it with one chunk of
+ * margin, so the baked geometry is bounded by the view size rather than the
+ * map size. The resident area is inside the chunks the TileMap keeps resident
+ * so baking never has to read a chunk from the map file.
+ *
+ * Only the chunks overlapping the camera are drawn. Animated tiles, entities,
+ * the player and particles still go through the SpriteBatch.
+ *
+ * @author Ming Li
+ */
+public class StaticTileCache implements Disposable {
+
+    // chunk width and height in tiles
+    public static final int CHUNK_SIZE = TileMap.CHUNK_SIZE;
+    // chunks kept resident around the visible chunks on each side
+    public static final int RESIDENT_MARGIN = TileMap.RESIDENT_MARGIN;
+
+    // the max number of sprites a SpriteCache can hold when using indices
+    static final int MAX_INDEXED_SPRITES = 5460;
+
+    private static final String VERTEX_SHADER =
+        "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n" +
+        "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n" +
+        "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n" +
+        "uniform mat4 u_projTrans;\n" +
+        "uniform vec4 u_tint;\n" +
+        "varying vec4 v_color;\n" +
+        "varying vec2 v_texCoords;\n" +
+        "void main() {\n" +
+        "    v_color = " + ShaderProgram.COLOR_ATTRIBUTE + " * u_tint;\n" +
+        "    v_color.a = v_color.a * (255.0/254.0);\n" +
+        "    v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n" +
+        "    gl_Position = u_projTrans * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n" +
+        "}\n";
+
+    private static final String FRAGMENT_SHADER =
+        "#ifdef GL_ES\n" +
+        "precision mediump float;\n" +
+        "#endif\n" +
+        "varying vec4 v_color;\n" +
+        "varying vec2 v_texCoords;\n" +
+        "uniform sampler2D u_texture;\n" +
+        "void main() {\n" +
+        "    gl_FragColor = v_color * texture2D(u_texture, v_texCoords);\n" +
+        "}\n";
+
+    private final TileMap map;
+    private SpriteCache cache;
+    // the number of sprites the SpriteCache was created with
+    private int size;
+    private final ShaderProgram shader;
+
+    private final int chunksX;
+    private final int chunksY;
+
+    // range of resident chunks (inclusive), empty until the first render
+    private int firstChunkX;
+    private int lastChunkX = -1;
+    private int firstChunkY;
+    private int lastChunkY = -1;
+
+    // cache ids of each chunk (-1 if the chunk has nothing to draw or is not resident)
+    private final int[] below;
+    private final int[] above;
+    // the number of sprites each cache was first created with
+    private final int[] belowCapacity;
+    private final int[] aboveCapacity;
+
+    // chunks that need to be rebaked because a tile changed
+    private final boolean[] dirty;
+    private boolean anyDirty = false;
+
+    public StaticTileCache(TileMap map) {
+        this.map = map;
+
+        chunksX = (map.mapWidth + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        chunksY = (map.mapHeight + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        below = new int[chunksX * chunksY];
+        above = new int[chunksX * chunksY];
+        belowCapacity = new int[chunksX * chunksY];
+        aboveCapacity = new int[chunksX * chunksY];
+        dirty = new boolean[chunksX * chunksY];
+
+        java.util.Arrays.fill(below, -1);
+        java.util.Arrays.fill(above, -1);
+
+        shader = new ShaderProgram(VERTEX_SHADER, FRAGMENT_SHADER);
+        if (!shader.isCompiled()) throw new GdxRuntimeException("Error compiling tile cache shader: " + shader.getLog());
+    }
+
+    /**
+     * Evicts every chunk and bakes the chunks in the resident range
+     * The SpriteCache is only recreated if the resident chunks need more sprites than it holds
+     */
+    private void bake() {
+        int total = 0;
+        for (int cy = firstChunkY; cy <= lastChunkY; cy++) {
+            for (int cx = firstChunkX; cx <= lastChunkX; cx++) {
+                total += count(cy * chunksX + cx, true) + count(cy * chunksX + cx, false);
+            }
+        }
+
+        if (cache == null || total > size) {
+            if (cache != null) cache.dispose();
+            size = Math.max(total, 1);
+            cache = new SpriteCache(size, size <= MAX_INDEXED_SPRITES);
+            cache.setShader(shader);
+        }
+        else cache.clear();
+
+        java.util.Arrays.fill(below, -1);
+        java.util.Arrays.fill(above, -1);
+        for (int cy = firstChunkY; cy <= lastChunkY; cy++) {
+            for (int cx = firstChunkX; cx <= lastChunkX; cx++) {
+                int chunk = cy * chunksX + cx;
+                belowCapacity[chunk] = count(chunk, true);
+                aboveCapacity[chunk] = count(chunk, false);
+                if (belowCapacity[chunk] != 0) below[chunk] = bakeChunk(-1, chunk, true);
+                if (aboveCapacity[chunk] != 0) above[chunk] = bakeChunk(-1, chunk, false);
+            }
+        }
+        java.util.Arrays.fill(dirty, false);
+        anyDirty = false;
+    }
+
+    /**
+     * Makes the chunks overlapping a range of visible tiles resident,
+     * rebaking around them if any of them is not resident yet
+     *
+     * @param firstRow
+     * @param lastRow
+     * @param firstCol
+     * @param lastCol
+     */
+    private void updateResidency(int firstRow, int lastRow, int firstCol, int lastCol) {
+        int fx = firstCol / CHUNK_SIZE;
+        int lx = lastCol / CHUNK_SIZE;
+        int fy = firstRow / CHUNK_SIZE;
+        int ly = lastRow / CHUNK_SIZE;
+        if (fx >= firstChunkX && lx <= lastChunkX && fy >= firstChunkY && ly <= lastChunkY) return;
+
+        firstChunkX = Math.max(0, fx - RESIDENT_MARGIN);
+        lastChunkX = Math.min(chunksX - 1, lx + RESIDENT_MARGIN);
+        firstChunkY = Math.max(0, fy - RESIDENT_MARGIN);
+        lastChunkY = Math.min(chunksY - 1, ly + RESIDENT_MARGIN);
+        bake();
+    }
+
+    private boolean isResident(int chunk) {
+        int cx = chunk % chunksX;
+        int cy = chunk / chunksX;
+        return cx >= firstChunkX && cx <= lastChunkX && cy >= firstChunkY && cy <= lastChunkY;
+    }
+
+    /**
+     * Adds the sprites of a chunk to a new cache or redefines an existing one
+     *
+     * @param cacheID the cache to redefine or -1 for a new cache
+     * @param chunk
+     * @param belowPlayer
+     * @return the cache id
+     */
+    private int bakeChunk(int cacheID, int chunk, boolean belowPlayer) {
+        if (cacheID == -1) cache.beginCache();
+        else cache.beginCache(cacheID);
+
+        MapChunk tiles = map.getChunkAt(chunk % chunksX, chunk / chunksX);
+        for (int r = tiles.y; r < tiles.y + tiles.height; r++) {
+            for (int c = tiles.x; c < tiles.x + tiles.width; c++) {
+                int i = tiles.index(c, r);
+                float x = map.origin.x + c * map.tileSize;
+                float y = map.origin.y + r * map.tileSize;
+                boolean special = Tile.isSpecial(tiles.types[i]);
+
+                if (belowPlayer) {
+                    if (tiles.bottomLayer[i] != -1) cache.add(map.getTileSprite(tiles.bottomLayer[i]), x, y);
+                    if (tiles.isStaticTile(i) && special) cache.add(map.getTileSprite(tiles.tiles[i]), x, y);
+                }
+                else {
+                    if (tiles.isStaticTile(i) && !special) cache.add(map.getTileSprite(tiles.tiles[i]), x, y);
+                    if (tiles.topLayer[i] != -1) cache.add(map.getTileSprite(tiles.topLayer[i]), x, y);
+                }
+            }
+        }
+        return cache.endCache();
+    }
+
+    /**
+     * Returns the number of sprites in one of the caches of a chunk
+     *
+     * @param chunk
+     * @param belowPlayer
+     * @return
+     */
+    private int count(int chunk, boolean belowPlayer) {
+        int n = 0;
+        MapChunk tiles = map.getChunkAt(chunk % chunksX, chunk / chunksX);
+        for (int r = tiles.y; r < tiles.y + tiles.height; r++) {
+            for (int c = tiles.x; c < tiles.x + tiles.width; c++) {
+                int i = tiles.index(c, r);
+                boolean special = Tile.isSpecial(tiles.types[i]);
+                if (belowPlayer) {
+                    if (tiles.bottomLayer[i] != -1) n++;
+                    if (tiles.isStaticTile(i) && special) n++;
+                }
+                else {
+                    if (tiles.isStaticTile(i) && !special) n++;
+                    if (tiles.topLayer[i] != -1) n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Marks the chunk containing a tile to be rebaked before it is drawn next
+     *
+     * @param tileX
+     * @param tileY
+     */
+    public void invalidate(int tileX, int tileY) {
+        int chunk = (tileY / CHUNK_SIZE) * chunksX + tileX / CHUNK_SIZE;
+        // evicted chunks are baked from the current layers when they become resident again
+        if (!isResident(chunk)) return;
+        dirty[chunk] = true;
+        anyDirty = true;
+    }
+
+    /**
+     * Rebakes changed chunks in place
+     * A cache can only be redefined with at most as many sprites as it was
+     * created with so every resident chunk is rebaked if a chunk grew
+     */
+    private void rebakeDirty() {
+        for (int chunk = 0; chunk < dirty.length; chunk++) {
+            if (!dirty[chunk]) continue;
+            int b = count(chunk, true);
+            int a = count(chunk, false);
+            if (b > belowCapacity[chunk] || a > aboveCapacity[chunk]) {
+                bake();
+                return;
+            }
+            if (below[chunk] != -1) bakeChunk(below[chunk], chunk, true);
+            if (above[chunk] != -1) bakeChunk(above[chunk], chunk, false);
+            dirty[chunk] = false;
+        }
+        anyDirty = false;
+    }
+
+    /**
+     * Draws the chunks overlapping a range of visible tiles
+     * The batch is ended while the cache is drawn and begun again afterwards
+     *
+     * @param batch
+     * @param firstRow
+     * @param lastRow
+     * @param firstCol
+     * @param lastCol
+     * @param belowPlayer whether to draw the caches below or above the player
+     */
+    public void render(SpriteBatch batch, int firstRow, int lastRow, int firstCol, int lastCol, boolean belowPlayer) {
+        if (lastRow < firstRow || lastCol < firstCol) return;
+        updateResidency(firstRow, lastRow, firstCol, lastCol);
+        if (anyDirty) rebakeDirty();
+
+        int[] caches = belowPlayer ? below : above;
+        batch.end();
+
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFunc(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
+        cache.setProjectionMatrix(batch.getProjectionMatrix());
+        cache.begin();
+        // apply the batch color so the map fades with the rest of the screen
+        shader.setUniformf("u_tint", batch.getColor());
+        for (int cy = firstRow / CHUNK_SIZE; cy <= lastRow / CHUNK_SIZE; cy++) {
+            for (int cx = firstCol / CHUNK_SIZE; cx <= lastCol / CHUNK_SIZE; cx++) {
+                int id = caches[cy * chunksX + cx];
+                if (id != -1) cache.draw(id);
+            }
+        }
+        cache.end();
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+
+        batch.begin();
+    }
+
+    @Override
+    public void dispose() {
+        if (cache != null) cache.dispose();
+        shader.dispose();
+    }
+
+}
@@ -4,7 +4,6 @@ import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Vector2;
 import com.loreJourney.animation.AnimationManager;
 import com.loreJourney.entity.Entity;
-import com.loreJourney.resource.Util;
 
 /**
  * Stores information about each tile on a map, including what it contains (Entity)
@@ -52,7 +51,7 @@ public class Tile {
 
     // Each tile has a unique identifier
     public int id;
-    // Tile type is determined by id
+    // Tile type is determined by id (see TileRegistry)
     public int type;
     // tiles can be animated
     public boolean animated;
@@ -80,10 +79,7 @@ public class Tile {
 
         animated = false;
 
-        if (Util.isBlockedTile(id)) type = BLOCKED;
-        else if ((id >= 171 && id <= 173) || (id >= 187 && id <= 189) || (id >= 203 && id <= 205)
-            || id == 220 || id == 221 || id == 236 || id == 237) type = ICE;
-        else type = NORMAL;
+        type = TileRegistry.getType(id, false);
     }
 
     /**
@@ -102,19 +98,28 @@ public class Tile {
 
         animated = true;
 
-        if (Util.isBlockedAnimatedTile(id)) type = BLOCKED;
-        else if (id == 99) type = CHANGE;
-        else if (id == 100) type = IN_AND_OUT;
-        else if (id == 101) type = STOP;
-        else if (id == 102) type = DOWN;
-        else if (id == 103) type = UP;
-        else if (id == 104) type = RIGHT;
-        else if (id == 105) type = LEFT;
-        else if (id == 106) type = QUESTION_MARK;
-        else if (id == 107) type = TELEPORT;
-        else if (id == 108) type = EXCLAMATION_MARK;
-        else if (id == 110) type = END;
-        else type = NORMAL;
+        type = TileRegistry.getType(id, true);
+    }
+
+    /**
+     * A view of a tile stored in a TileMap
+     *
+     * @param id
+     * @param type
+     * @param sprite
+     * @param anim null if the tile is not animated
+     * @param tilePosition
+     * @param hold
+     */
+    Tile(int id, int type, TextureRegion sprite, AnimationManager anim, Vector2 tilePosition, Entity hold) {
+        this.id = id;
+        this.type = type;
+        this.sprite = sprite;
+        this.anim = anim;
+        this.tilePosition = tilePosition;
+        this.hold = hold;
+
+        animated = anim != null;
     }
 
     public void addEntity(Entity e) {
@@ -165,6 +170,10 @@ public class Tile {
      * @return
      */
     public boolean isSpecial() {
+        return isSpecial(type);
+    }
+
+    public static boolean isSpecial(int type) {
         return type != NORMAL && type != BLOCKED;
     }
 
@@ -5,12 +5,29 @@ import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.StreamUtils;
 import com.loreJourney.animation.AnimationManager;
+import com.loreJourney.ecs.EntityWorld;
 import com.loreJourney.entity.Entity;
+import com.loreJourney.entity.enemy.EnemyPool;
 import com.loreJourney.resource.ResourceManager;
-import com.loreJourney.resource.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * Creates a tilemap from a text file.
@@ -53,24 +70,104 @@ import com.loreJourney.resource.Util;
  * A map will always have a bottom layer and tile map layer but does
  * not need to have a top layer
  *
+ * Maps can also be compiled into a binary format (see MapFormat) which
+ * is loaded without any parsing. A path ending in MapFormat.EXTENSION is
+ * read as a compiled map, anything else as a text map.
+ *
+ * The map is split into chunks of CHUNK_SIZE x CHUNK_SIZE tiles (see MapChunk)
+ * that each hold the layers, spawns and movement tables of their tiles as
+ * parallel primitive arrays. Only the chunks around the camera are resident:
+ * setView loads the chunks within spawnRadius tiles and RESIDENT_MARGIN chunks
+ * of the visible tiles and evicts every other chunk, returning its entities to
+ * the EnemyPool as spawns. An evicted chunk is read from the map file again
+ * when it is next needed, or from deflated bytes if any of its tiles or
+ * spawns changed, so the memory of a map is bounded by the view rather than
+ * the map size. Tiles are still addressed with tile coordinates or tile indices
+ * tileY * mapWidth + tileX into the whole map, and tiles of evicted chunks
+ * are loaded on demand, so callers never see a chunk border.
+ *
+ * Compiled maps are streamed from the map file. Text maps are compiled into
+ * memory when loaded so only the chunks they decode into are bounded.
+ * The map is read through once when it is loaded to index its teleports
+ * and count its tiles. getTile returns a Tile view of a cell for existing callers.
+ *
  * @author Ming Li
  */
 public class TileMap {
 
+    // chunk width and height in tiles
+    public static final int CHUNK_SIZE = MapFormat.CHUNK_SIZE;
+    // chunks kept resident around the chunks near the visible tiles on each side
+    public static final int RESIDENT_MARGIN = 1;
+
     // Tiles
     public int tileSize;
 
     // Map
-    public String mapInfo;
-    public String[] mapInfoLines;
-    // array containing map information
-    public Tile[] tileMap;
-    public TextureRegion[] bottomLayer;
-    public TextureRegion[] topLayer;
     public boolean hasTopLayer;
     public int mapWidth;
     public int mapHeight;
-    public boolean[] collisionMap;
+
+    // the number of chunks on each axis
+    private int chunksX;
+    private int chunksY;
+    // resident chunks by chunk index (null if the chunk is evicted)
+    private MapChunk[] chunks;
+    // every resident chunk
+    private Array<MapChunk> residentChunks;
+    // evicted chunks that can be reused
+    private Array<MapChunk> freeChunks;
+    // range of chunks kept resident by setView (inclusive)
+    private int firstChunkX;
+    private int lastChunkX = -1;
+    private int firstChunkY;
+    private int lastChunkY = -1;
+
+    // compiled map file that chunks are read from
+    private FileHandle file;
+    // compiled bytes of a text map, null for compiled maps
+    private byte[] data;
+    // offset of each chunk of the compiled map, the last entry is the end of the file
+    private int[] offsets;
+    // animation kind and tile id of each entry of the animation table of the compiled map
+    private int[] fileKinds;
+    private int[] fileTiles;
+    // a chunk of the compiled map as read from the file
+    private byte[] record;
+    // changed chunks while they are evicted by chunk index (see MapChunk.compact)
+    private IntMap<byte[]> compacted;
+    private Deflater deflater;
+    private Inflater inflater;
+
+    // one shared animation per kind of animated tile, every tile of a kind
+    // shows the same frame so each kind only needs to be updated once
+    private Array<AnimationManager> animations;
+    // animIndex | numFrames << 8 | fps << 16 -> animation kind
+    private IntIntMap animationKinds;
+    // the number of animated tiles of each kind in resident chunks, kinds with none aren't updated
+    private IntArray residentAnimations;
+    // entities by the tile they are on, a tile can hold any number of entities
+    private SpatialHash occupants;
+    // every entity on the map in the order they were added
+    private Array<Entity> activeEntities;
+    // entities on visible tiles, refilled every render
+    private Array<Entity> visibleEntities;
+    // entity ids of the enemies created from spawns, so they can become spawns again when evicted
+    private ObjectIntMap<Entity> spawnedIDs;
+    // enemies are created once they are this many tiles from the visible tiles
+    public int spawnRadius = 4;
+    // decides which entities are updated each frame
+    public UpdateScheduler scheduler;
+    // where steps, slides and redirects from each tile lead
+    public TransitionTable transitions;
+
+    // tile indices of every teleportation tile
+    private IntArray teleports;
+    // the number of tiles of each tile id
+    private IntIntMap tileCounts;
+
+    // every tile of the tile sheet by tile index
+    private TextureRegion[] tileSprites;
 
     public Vector2 origin;
     public Vector2 playerSpawn;
@@ -78,212 +175,657 @@ public class TileMap {
     public boolean dark;
     public int weather;
 
+    // range of tiles visible to the camera (inclusive)
+    private int firstRow;
+    private int lastRow = -1;
+    private int firstCol;
+    private int lastCol = -1;
+
+    // static layers baked into chunks, null when drawing everything through the batch
+    private StaticTileCache staticCache;
+
+    // enemies are obtained from and returned to this pool
+    private EnemyPool enemyPool;
+    // if set, enemies are spawned as components in this world instead of from the pool
+    private EntityWorld entityWorld;
+    // lights of dark maps, told when a tile changes
+    private LightMap lightMap;
+
     // res
     private ResourceManager rm;
 
-    public TileMap(int tileSize, String path, Vector2 origin, ResourceManager rm) {
+    public TileMap(int tileSize, String path, Vector2 origin, EnemyPool enemyPool, ResourceManager rm) {
         this.tileSize = tileSize;
         this.origin = origin;
+        this.enemyPool = enemyPool;
         this.rm = rm;
 
         playerSpawn = new Vector2();
 
-        // read file into a String
-        FileHandle file = Gdx.files.internal(path);
-        mapInfo = file.readString();
-        // split string by newlines
-        mapInfoLines = mapInfo.split("\\r?\\n");
-        mapWidth = Integer.parseInt(mapInfoLines[0]);
-        mapHeight = Integer.parseInt(mapInfoLines[1]);
+        // flatten the tile sheet so a tile index maps straight to its texture
+        int l = rm.tiles16x16[0].length;
+        tileSprites = new TextureRegion[rm.tiles16x16.length * l];
+        for (int i = 0; i < tileSprites.length; i++) {
+            tileSprites[i] = rm.tiles16x16[i / l][i % l];
+        }
+
+        animations = new Array<AnimationManager>();
+        animationKinds = new IntIntMap();
+        residentAnimations = new IntArray();
+        activeEntities = new Array<Entity>();
+        visibleEntities = new Array<Entity>();
+        spawnedIDs = new ObjectIntMap<Entity>();
+        scheduler = new UpdateScheduler();
+        residentChunks = new Array<MapChunk>();
+        freeChunks = new Array<MapChunk>();
+        compacted = new IntMap<byte[]>();
+        deflater = new Deflater();
+        inflater = new Inflater();
+        record = new byte[0];
+
+        file = Gdx.files.internal(path);
+        if (!path.endsWith(MapFormat.EXTENSION)) data = MapFormat.compile(file.readBytes());
+        load();
+
+        occupants = new SpatialHash(mapWidth, mapHeight, tileSize);
+        transitions = new TransitionTable(this);
+    }
+
+    /**
+     * Opens the compiled map for reading from the start
+     *
+     * @return
+     */
+    private DataInputStream open() {
+        return new DataInputStream(data != null ? new ByteArrayInputStream(data) : file.read(8192));
+    }
 
-        playerSpawn.set(Integer.parseInt(mapInfoLines[2]), Integer.parseInt(mapInfoLines[3]));
+    /**
+     * Reads the header of the compiled map and reads through every chunk once
+     * to index the teleportation tiles and count the tiles of the map
+     * No chunk is kept resident
+     */
+    private void load() {
+        DataInputStream in = open();
+        try {
+            if (in.readInt() != MapFormat.MAGIC) throw new GdxRuntimeException("Not a compiled map: " + file.path());
+            int version = in.readShort();
+            if (version != MapFormat.VERSION) throw new GdxRuntimeException("Unsupported map version " + version + ": " + file.path());
 
-        dark = Integer.parseInt(mapInfoLines[4]) == 1;
-        weather = Integer.parseInt(mapInfoLines[5]);
+            mapWidth = in.readShort();
+            mapHeight = in.readShort();
+            playerSpawn.set(in.readShort(), in.readShort());
+            dark = in.readByte() == 1;
+            weather = in.readByte();
+            hasTopLayer = in.readByte() == 1;
+            // reserved
+            in.readByte();
 
-        bottomLayer = new TextureRegion[mapWidth * mapHeight];
-        tileMap = new Tile[mapWidth * mapHeight];
-        topLayer = new TextureRegion[mapWidth * mapHeight];
+            // animation table stored as (animIndex, numFrames, fps)
+            int numAnimations = in.readShort();
+            fileKinds = new int[numAnimations];
+            fileTiles = new int[numAnimations];
+            for (int n = 0; n < numAnimations; n++) {
+                fileTiles[n] = in.readByte() + 96;
+                fileKinds[n] = getAnimationKind(fileTiles[n] - 96, in.readByte(), in.readByte());
+            }
 
-        createBottomLayer();
-        createTileMap();
-        createTopLayer();
+            chunksX = (mapWidth + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            chunksY = (mapHeight + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            chunks = new MapChunk[chunksX * chunksY];
+            offsets = new int[chunks.length + 1];
+            for (int i = 0; i < offsets.length; i++) offsets[i] = in.readInt();
 
-        collisionMap = new boolean[mapWidth * mapHeight];
-        for (int i = 0; i < collisionMap.length; i++) {
-            collisionMap[i] = tileMap[i].isBlocked();
+            teleports = new IntArray();
+            tileCounts = new IntIntMap();
+            MapChunk chunk = new MapChunk();
+            for (int i = 0; i < chunks.length; i++) {
+                chunk.reset(i, chunksX, mapWidth, mapHeight);
+                readChunk(in, chunk);
+                for (int r = 0; r < chunk.height; r++) {
+                    for (int c = 0; c < chunk.width; c++) {
+                        int j = r * CHUNK_SIZE + c;
+                        if (chunk.types[j] == Tile.TELEPORT) teleports.add(chunk.tileIndex(j, mapWidth));
+                        tileCounts.getAndIncrement(chunk.tiles[j], 0, 1);
+                    }
+                }
+            }
+            freeChunks.add(chunk);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error reading map: " + file.path(), e);
+        } finally {
+            StreamUtils.closeQuietly(in);
         }
     }
 
     /**
-     * Converts lines 6->n of the mapInfo into a 1d array of TextureRegions
-     * representing a non collidable bottom layer
+     * Reads the next chunk of the compiled map into a chunk that was just reset
+     *
+     * @param in positioned at the start of the chunk
+     * @param chunk
+     * @throws IOException
      */
-    private void createBottomLayer() {
-        for (int i = 6; i < mapHeight + 6; i++) {
-            String[] row = mapInfoLines[i].split(",");
-            String[] trimmed = new String[row.length];
-            for (int j = 0; j < row.length; j++) {
-                trimmed[j] = row[j].replaceAll(" ", "");
+    private void readChunk(DataInputStream in, MapChunk chunk) throws IOException {
+        int length = offsets[chunk.index + 1] - offsets[chunk.index];
+        if (record.length < length) record = new byte[length];
+        in.readFully(record, 0, length);
+        ByteBuffer buffer = ByteBuffer.wrap(record, 0, length);
+
+        for (int r = 0; r < chunk.height; r++) {
+            for (int c = 0; c < chunk.width; c++) {
+                chunk.bottomLayer[r * CHUNK_SIZE + c] = (short) (buffer.getShort() - 1);
             }
-            for (int j = 0; j < mapWidth; j++) {
-                int k = (mapWidth * mapHeight - 1) - ((i - 6) * mapWidth + j);
-                int l = rm.tiles16x16[0].length;
-
-                // index of -1 is null
-                // bottom layer is null in cases where an upper tile will
-                // completely replace the texture
-                int index = Integer.parseInt(trimmed[row.length - 1 - j]) - 1;
-                if (index == -1) bottomLayer[k] = null;
-                else bottomLayer[k] = rm.tiles16x16[index / l][index % l];
+        }
+        for (int r = 0; r < chunk.height; r++) {
+            for (int c = 0; c < chunk.width; c++) {
+                int id = buffer.getShort();
+                if (id < 0) chunk.set(r * CHUNK_SIZE + c, fileTiles[-id - 1], fileKinds[-id - 1]);
+                else createTile(chunk, r * CHUNK_SIZE + c, id);
+            }
+        }
+        int numEntities = buffer.getShort();
+        for (int n = 0; n < numEntities; n++) {
+            int i = buffer.getShort();
+            setEntityTile(chunk, i, buffer.getShort());
+        }
+        if (hasTopLayer) {
+            for (int r = 0; r < chunk.height; r++) {
+                for (int c = 0; c < chunk.width; c++) {
+                    chunk.topLayer[r * CHUNK_SIZE + c] = (short) (buffer.getShort() - 1);
+                }
             }
         }
     }
 
     /**
-     * Converts lines mapHeight + 7->n of the mapInfo to a 1d array of Tiles
-     * representing a tile for each element
+     * Creates a tile from a map file tile id, converting
+     * ids of animated tiles to their animation
+     *
+     * @param chunk
+     * @param i index into the chunk
+     * @param id map file tile id (0 for no tile)
      */
-    private void createTileMap() {
-        for (int i = mapHeight + 6; i < 2 * mapHeight + 6; i++) {
-            String[] row = mapInfoLines[i].split(",");
-            // remove all whitespace from text so the map files can be more readable with spaces
-            String[] trimmed = new String[row.length];
-            for (int j = 0; j < row.length; j++) {
-                trimmed[j] = row[j].replaceAll(" ", "");
-            }
-            for (int j = 0; j < mapWidth; j++) {
-                String temp = getAnimatedTileConversion(trimmed[row.length - 1 - j]);
+    private void createTile(MapChunk chunk, int i, int id) {
+        int anim = TileRegistry.getAnimation(id);
+        if (anim != -1) {
+            int animIndex = anim & 0xff;
+            chunk.set(i, animIndex + 96, getAnimationKind(animIndex, (anim >> 8) & 0xff, anim >> 16));
+            return;
+        }
+        chunk.set(i, id - 1, -1);
+    }
 
-                int k = (mapWidth * mapHeight - 1) - ((i - mapHeight - 6) * mapWidth + j);
-                int l = rm.tiles16x16[0].length;
+    /**
+     * Returns the kind of animated tile every tile with the same animIndex,
+     * numFrames and fps shares its animation with, creating it if there is none
+     *
+     * @param animIndex
+     * @param numFrames
+     * @param fps
+     * @return
+     */
+    private int getAnimationKind(int animIndex, int numFrames, int fps) {
+        int spec = animIndex | numFrames << 8 | fps << 16;
+        int kind = animationKinds.get(spec, -1);
+        if (kind == -1) {
+            kind = addAnimation(new AnimationManager(rm.getAnimation(rm.atiles16x16, animIndex, 0, numFrames, (float) 1 / fps)));
+            animationKinds.put(spec, kind);
+        }
+        return kind;
+    }
 
-                int y = k / mapWidth;
-                int x = k % mapWidth;
+    private int addAnimation(AnimationManager anim) {
+        animations.add(anim);
+        residentAnimations.add(0);
+        return animations.size - 1;
+    }
 
-                Tile t;
+    /**
+     * An entity is placed onto a tile with id -1 meaning empty tile with no texture
+     * The Entity itself is only created when it comes near the camera (see spawnEntities)
+     *
+     * @param chunk
+     * @param i index into the chunk
+     * @param entityID
+     */
+    private void setEntityTile(MapChunk chunk, int i, int entityID) {
+        chunk.set(i, -1, -1);
+        // the tile is left empty for ids that aren't enemies
+        if (EnemyPool.isEnemy(entityID)) chunk.spawns.put(chunk.tileIndex(i, mapWidth), entityID);
+    }
 
-                // check for Entity and tile format "e[Entity ID]" meaning
-                // an Entity is placed on a certain tile
-                if (temp.startsWith("e")) {
-                    String removeSymbol = temp.substring(1, temp.length());
-                    int entityID = Integer.parseInt(removeSymbol);
+    /**
+     * Returns the chunk containing a tile, loading it if it is evicted
+     *
+     * @param tileX
+     * @param tileY
+     * @return
+     */
+    MapChunk getChunk(int tileX, int tileY) {
+        int index = (tileY / CHUNK_SIZE) * chunksX + tileX / CHUNK_SIZE;
+        MapChunk chunk = chunks[index];
+        return chunk != null ? chunk : loadChunk(index);
+    }
 
-                    TextureRegion none = null;
-                    // an entity is placed onto a tile with id -1 meaning empty tile with no texture
-                    t = new Tile(-1, none, new Vector2(x, y));
-                    t.addEntity(Util.getEntity(entityID, toMapCoords(x, y), this, rm));
-                }
-                // check for animated tile format
-                else if (temp.startsWith("a")) {
-                    String removeSymbol = temp.substring(1, temp.length());
-                    String[] trivalue = removeSymbol.split("\\|");
+    /**
+     * Returns the chunk containing a tile index
+     *
+     * @param k index into the tile map
+     * @return
+     */
+    MapChunk getChunk(int k) {
+        return getChunk(k % mapWidth, k / mapWidth);
+    }
+
+    /**
+     * Returns a chunk by its position in chunks, loading it if it is evicted
+     *
+     * @param chunkX
+     * @param chunkY
+     * @return
+     */
+    MapChunk getChunkAt(int chunkX, int chunkY) {
+        int index = chunkY * chunksX + chunkX;
+        MapChunk chunk = chunks[index];
+        return chunk != null ? chunk : loadChunk(index);
+    }
 
-                    int animIndex = Integer.parseInt(trivalue[0]);
-                    int numFrames = Integer.parseInt(trivalue[1]);
-                    int fps = Integer.parseInt(trivalue[2]);
+    /**
+     * Loads a single evicted chunk outside of setView
+     * It stays resident until setView next evicts the chunks away from the camera
+     *
+     * @param index
+     * @return
+     */
+    private MapChunk loadChunk(int index) {
+        DataInputStream in = null;
+        try {
+            byte[] compact = compacted.remove(index);
+            if (compact == null) {
+                in = open();
+                skip(in, offsets[index]);
+            }
+            return loadChunk(index, in, compact);
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error reading map: " + file.path(), e);
+        } finally {
+            StreamUtils.closeQuietly(in);
+        }
+    }
 
-                    AnimationManager anim = new AnimationManager(rm.atiles16x16, numFrames, animIndex, (float) 1 / fps);
+    /**
+     * Makes a chunk resident from its compact form if it changed or else from the map file
+     *
+     * @param index
+     * @param in positioned at the start of the chunk in the map file if compact is null
+     * @param compact the chunk as written by MapChunk.compact or null
+     * @return
+     * @throws IOException
+     */
+    private MapChunk loadChunk(int index, DataInputStream in, byte[] compact) throws IOException {
+        MapChunk chunk = freeChunks.size > 0 ? freeChunks.pop() : new MapChunk();
+        chunk.reset(index, chunksX, mapWidth, mapHeight);
+        if (compact != null) {
+            chunk.restore(compact, inflater);
+            chunk.modified = true;
+        }
+        else readChunk(in, chunk);
 
-                    t = new Tile(animIndex + 96, anim, new Vector2(x, y));
+        for (int i = 0; i < chunk.anims.length; i++) {
+            if (chunk.anims[i] != -1) residentAnimations.incr(chunk.anims[i], 1);
+        }
+        chunks[index] = chunk;
+        residentChunks.add(chunk);
+        return chunk;
+    }
+
+    /**
+     * Skips ahead in a stream, InputStream.skip may skip fewer bytes than asked
+     */
+    private static void skip(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) throw new EOFException();
+            n -= skipped;
+        }
+    }
+
+    /**
+     * Evicts a resident chunk
+     * Its entities are returned to the EnemyPool and the enemies created from
+     * spawns become spawns again. If any of its tiles or spawns changed it is
+     * kept in its compact form, otherwise it is read from the map file when it is next needed.
+     *
+     * @param chunk
+     */
+    private void evictChunk(MapChunk chunk) {
+        int x1 = chunk.x + chunk.width - 1;
+        int y1 = chunk.y + chunk.height - 1;
+        occupants.query(chunk.x, chunk.y, x1, y1, visibleEntities);
+        for (int i = 0; i < visibleEntities.size; i++) {
+            Entity e = visibleEntities.get(i);
+            int entityID = spawnedIDs.get(e, -1);
+            if (entityID != -1) chunk.spawns.put(occupants.cellOf(e), entityID);
+            detachEntity(e);
+            enemyPool.free(e);
+        }
+        visibleEntities.clear();
+        if (entityWorld != null && entityWorld.size() > 0) {
+            for (int r = chunk.y; r <= y1; r++) {
+                for (int c = chunk.x; c <= x1; c++) {
+                    int entityID = entityWorld.evict(r * mapWidth + c);
+                    if (entityID != -1) chunk.spawns.put(r * mapWidth + c, entityID);
                 }
-                else {
-                    int index = Integer.parseInt(trimmed[row.length - 1 - j]) - 1;
-                    if (index == -1) {
-                        TextureRegion none = null;
-                        t = new Tile(-1, none, new Vector2(x, y));
-                    }
-                    else {
-                        t = new Tile(index, rm.tiles16x16[index / l][index % l], new Vector2(x, y));
+            }
+        }
+
+        for (int i = 0; i < chunk.anims.length; i++) {
+            if (chunk.anims[i] != -1) residentAnimations.incr(chunk.anims[i], -1);
+        }
+        if (chunk.modified) compacted.put(chunk.index, chunk.compact(deflater));
+        chunks[chunk.index] = null;
+        residentChunks.removeValue(chunk, true);
+        freeChunks.add(chunk);
+    }
+
+    /**
+     * Keeps the chunks within spawnRadius tiles and RESIDENT_MARGIN chunks
+     * of the visible tiles resident and evicts every other chunk
+     * The missing chunks are read from the map file in a single pass
+     */
+    private void updateResidency() {
+        int fx = Math.max(0, Math.max(0, firstCol - spawnRadius) / CHUNK_SIZE - RESIDENT_MARGIN);
+        int lx = Math.min(chunksX - 1, Math.min(mapWidth - 1, lastCol + spawnRadius) / CHUNK_SIZE + RESIDENT_MARGIN);
+        int fy = Math.max(0, Math.max(0, firstRow - spawnRadius) / CHUNK_SIZE - RESIDENT_MARGIN);
+        int ly = Math.min(chunksY - 1, Math.min(mapHeight - 1, lastRow + spawnRadius) / CHUNK_SIZE + RESIDENT_MARGIN);
+        // chunks loaded on demand away from the camera are evicted once the range changes
+        if (fx == firstChunkX && lx == lastChunkX && fy == firstChunkY && ly == lastChunkY &&
+            residentChunks.size == (lx - fx + 1) * (ly - fy + 1)) return;
+
+        firstChunkX = fx;
+        lastChunkX = lx;
+        firstChunkY = fy;
+        lastChunkY = ly;
+        for (int i = residentChunks.size - 1; i >= 0; i--) {
+            MapChunk chunk = residentChunks.get(i);
+            int cx = chunk.index % chunksX;
+            int cy = chunk.index / chunksX;
+            if (cx < fx || cx > lx || cy < fy || cy > ly) evictChunk(chunk);
+        }
+
+        DataInputStream in = null;
+        // position of in in the map file
+        int position = 0;
+        try {
+            // chunks are stored in index order so the file is only read forwards
+            for (int cy = fy; cy <= ly; cy++) {
+                for (int cx = fx; cx <= lx; cx++) {
+                    int index = cy * chunksX + cx;
+                    if (chunks[index] != null) continue;
+                    byte[] compact = compacted.remove(index);
+                    if (compact == null) {
+                        if (in == null) in = open();
+                        skip(in, offsets[index] - position);
+                        position = offsets[index + 1];
                     }
+                    loadChunk(index, in, compact);
                 }
-                tileMap[k] = t;
             }
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Error reading map: " + file.path(), e);
+        } finally {
+            StreamUtils.closeQuietly(in);
         }
     }
 
     /**
-     * Creates the top layer of the map if there is one,
-     * converting lines 2 * mapHeight + 7 -> n into a 1d array of TextureRegions
+     * Returns every resident chunk
+     * The returned array is owned by the map and must not be modified
+     *
+     * @return
      */
-    private void createTopLayer() {
-        // get boolean hasTopLayer
-        int h = Integer.parseInt(mapInfoLines[2 * mapHeight + 6]);
-        hasTopLayer = h == 1 ? true : false;
-        if (!hasTopLayer) return;
+    Array<MapChunk> getLoadedChunks() {
+        return residentChunks;
+    }
 
-        for (int i = 2 * mapHeight + 7; i < 3 * mapHeight + 7; i++) {
-            String[] row = mapInfoLines[i].split(",");
-            String[] trimmed = new String[row.length];
-            for (int j = 0; j < trimmed.length; j++) {
-                trimmed[j] = row[j].replaceAll(" ", "");
-            }
-            for (int j = 0; j < mapWidth; j++) {
-                int k = (mapWidth * mapHeight - 1) - ((i - (2 * mapHeight + 7)) * mapWidth + j);
-                int l = rm.tiles16x16[0].length;
+    /**
+     * Returns the chunk containing a tile without loading it
+     *
+     * @param tileX
+     * @param tileY
+     * @return null if the chunk is evicted
+     */
+    MapChunk getLoadedChunk(int tileX, int tileY) {
+        return chunks[(tileY / CHUNK_SIZE) * chunksX + tileX / CHUNK_SIZE];
+    }
+
+    /**
+     * Returns the number of chunks in memory, for measuring
+     *
+     * @return
+     */
+    public int getResidentChunks() {
+        return residentChunks.size;
+    }
 
-                // index of -1 is null
-                int index = Integer.parseInt(trimmed[row.length - 1 - j]) - 1;
+    /**
+     * Creates the Entity waiting to be spawned on a tile if there is one
+     *
+     * @param chunk the chunk containing the tile
+     * @param k index into the tile map
+     */
+    private void spawnEntity(MapChunk chunk, int k) {
+        int entityID = chunk.spawns.remove(k, -1);
+        if (entityID != -1) createEntity(k, entityID);
+    }
 
-                if (index == -1) topLayer[k] = null;
-                else topLayer[k] = rm.tiles16x16[index / l][index % l];
+    private void createEntity(int k, int entityID) {
+        if (entityWorld != null) {
+            entityWorld.spawn(entityID, k, origin.x + (k % mapWidth) * tileSize, origin.y + (k / mapWidth) * tileSize);
+        }
+        else {
+            // ids that aren't enemies are ignored like the text loader always did
+            Entity e = enemyPool.obtain(entityID, k % mapWidth, k / mapWidth, this);
+            if (e != null) {
+                putEntity(k, e);
+                spawnedIDs.put(e, entityID);
             }
         }
     }
 
+    /**
+     * Spawns enemies that have not been created yet into an EntityWorld
+     * instead of obtaining them from the EnemyPool
+     * getEntity returns null for enemies in the EntityWorld
+     *
+     * @param entityWorld
+     */
+    public void setEntityWorld(EntityWorld entityWorld) {
+        this.entityWorld = entityWorld;
+    }
+
+    public void setLightMap(LightMap lightMap) {
+        this.lightMap = lightMap;
+    }
+
+    /**
+     * Creates every Entity waiting to be spawned within spawnRadius tiles of the visible tiles
+     */
+    private void spawnEntities() {
+        // looks up the tiles around the view rather than walking every spawn of the map
+        spawnEntities(firstCol - spawnRadius, firstRow - spawnRadius, lastCol + spawnRadius, lastRow + spawnRadius);
+    }
+
+    /**
+     * Stores a tile in the tile map layer of a resident chunk, keeping the
+     * teleports, tile counts and resident animations of the map up to date
+     *
+     * @param chunk
+     * @param i index into the chunk
+     * @param id tile id
+     * @param anim animation kind or -1 if the tile is not animated
+     */
+    private void setCell(MapChunk chunk, int i, int id, int anim) {
+        int k = chunk.tileIndex(i, mapWidth);
+        if (chunk.types[i] == Tile.TELEPORT) teleports.removeValue(k);
+        tileCounts.getAndIncrement(chunk.tiles[i], 0, -1);
+        if (chunk.anims[i] != -1) residentAnimations.incr(chunk.anims[i], -1);
+
+        chunk.set(i, id, anim);
+        chunk.modified = true;
+
+        if (chunk.types[i] == Tile.TELEPORT) teleports.add(k);
+        tileCounts.getAndIncrement(id, 0, 1);
+        if (anim != -1) residentAnimations.incr(anim, 1);
+    }
+
+    /**
+     * Returns the tile texture for a tile index
+     *
+     * @param index
+     * @return the texture or null for an index of -1
+     */
+    public TextureRegion getTileSprite(int index) {
+        if (index == -1) return null;
+        return tileSprites[index];
+    }
+
+    /**
+     * Returns the current frame of an animated tile
+     *
+     * @param chunk
+     * @param i index into the chunk
+     * @return
+     */
+    TextureRegion getAnimatedSprite(MapChunk chunk, int i) {
+        return animations.get(chunk.anims[i]).getKeyFrame(true);
+    }
+
     public void update(float dt) {
-        for (int i = 0; i < tileMap.length; i++) {
-            if (tileMap[i].containsEntity()) {
-                tileMap[i].getEntity().update(dt);
-            }
-            if (tileMap[i].animated) {
-                tileMap[i].anim.update(dt);
-            }
+        // once per animation kind with tiles in resident chunks rather than per animated tile
+        for (int i = 0; i < animations.size; i++) {
+            if (residentAnimations.get(i) > 0) animations.get(i).update(dt);
         }
     }
 
+    /**
+     * Updates the entities of the map
+     * Called once per rendered frame rather than once per simulation step
+     * since the scheduler's budget, interval and counters are per frame
+     *
+     * @param dt time since the entities were last updated
+     */
+    public void updateEntities(float dt) {
+        scheduler.update(this, activeEntities, dt);
+        if (entityWorld != null) entityWorld.update(dt);
+    }
+
+    /**
+     * Calculates the range of rows and columns visible to the camera
+     * Called once per frame before any of the layers are rendered so that
+     * rendering only iterates the tiles on screen instead of the whole map
+     * The chunks around the camera are loaded and the chunks away from it evicted
+     *
+     * @param cam map camera
+     */
+    public void setView(OrthographicCamera cam) {
+        float halfWidth = cam.viewportWidth * cam.zoom / 2;
+        float halfHeight = cam.viewportHeight * cam.zoom / 2;
+
+        // one extra tile on each side for entity shadows and partially visible tiles
+        int c0 = Math.max(0, (int) Math.floor((cam.position.x - halfWidth - origin.x) / tileSize) - 1);
+        int c1 = Math.min(mapWidth - 1, (int) Math.floor((cam.position.x + halfWidth - origin.x) / tileSize) + 1);
+        int r0 = Math.max(0, (int) Math.floor((cam.position.y - halfHeight - origin.y) / tileSize) - 1);
+        int r1 = Math.min(mapHeight - 1, (int) Math.floor((cam.position.y + halfHeight - origin.y) / tileSize) + 1);
+        // the range only changes when the camera crosses a tile
+        boolean moved = c0 != firstCol || c1 != lastCol || r0 != firstRow || r1 != lastRow;
+
+        firstCol = c0;
+        lastCol = c1;
+        firstRow = r0;
+        lastRow = r1;
+
+        if (moved || residentChunks.size != (lastChunkX - firstChunkX + 1) * (lastChunkY - firstChunkY + 1)) updateResidency();
+        if (moved) spawnEntities();
+    }
+
+    /**
+     * Bakes the bottom layer, non animated tiles and top layer of the chunks
+     * near the camera into a StaticTileCache so they no longer go through the SpriteBatch
+     * Static layers must not be modified except through setTile
+     */
+    public void bakeStaticLayers() {
+        if (staticCache == null) staticCache = new StaticTileCache(this);
+    }
+
     /**
      * Renders the bottom layer as the deepest part of the map
      *
      * @param batch
      */
-    public void renderBottomLayer(SpriteBatch batch, OrthographicCamera cam) {
-        for (int i = 0; i < bottomLayer.length; i++) {
-            if (tileInsideCamera(tileMap[i], cam)) {
-                int r = i / mapWidth;
-                int c = i % mapWidth;
-
-                if (bottomLayer[i] != null)
-                    batch.draw(bottomLayer[i], origin.x + c * tileSize, origin.y + r * tileSize);
-                // render animated tiles below the player
-                if (tileMap[i].animated) {
-                    batch.draw(tileMap[i].anim.getKeyFrame(true), origin.x + c * tileSize, origin.y + r * tileSize);
-                }
-                // rendering non animated special tiles
-                if (!tileMap[i].animated && tileMap[i].isSpecial() && tileMap[i].sprite != null) {
-                    batch.draw(tileMap[i].sprite, origin.x + c * tileSize, origin.y + r * tileSize);
-                }
-                // drawing an entity on a Tile
-                if (tileMap[i].containsEntity()) {
-                    tileMap[i].getEntity().render(batch, true);
+    public void renderBottomLayer(SpriteBatch batch) {
+        if (staticCache != null) {
+            staticCache.render(batch, firstRow, lastRow, firstCol, lastCol, true);
+        }
+        for (int cy = firstRow / CHUNK_SIZE; cy <= lastRow / CHUNK_SIZE; cy++) {
+            for (int cx = firstCol / CHUNK_SIZE; cx <= lastCol / CHUNK_SIZE; cx++) {
+                MapChunk chunk = getChunkAt(cx, cy);
+                int c0 = Math.max(firstCol, chunk.x);
+                int c1 = Math.min(lastCol, chunk.x + chunk.width - 1);
+                for (int r = Math.max(firstRow, chunk.y); r <= Math.min(lastRow, chunk.y + chunk.height - 1); r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        int i = chunk.index(c, r);
+
+                        if (staticCache == null) {
+                            if (chunk.bottomLayer[i] != -1)
+                                batch.draw(tileSprites[chunk.bottomLayer[i]], origin.x + c * tileSize, origin.y + r * tileSize);
+                            // rendering non animated special tiles
+                            if (chunk.isStaticTile(i) && Tile.isSpecial(chunk.types[i]))
+                                batch.draw(tileSprites[chunk.tiles[i]], origin.x + c * tileSize, origin.y + r * tileSize);
+                        }
+                        // render animated tiles below the player
+                        if (chunk.anims[i] != -1) {
+                            batch.draw(getAnimatedSprite(chunk, i), origin.x + c * tileSize, origin.y + r * tileSize);
+                        }
+                    }
                 }
             }
         }
+        // drawing the entities on visible tiles
+        occupants.query(firstCol, firstRow, lastCol, lastRow, visibleEntities);
+        for (int i = 0; i < visibleEntities.size; i++) {
+            visibleEntities.get(i).render(batch, true);
+        }
+        visibleEntities.clear();
+        if (entityWorld != null) {
+            entityWorld.render(batch, firstCol, firstRow, lastCol, lastRow, mapWidth);
+        }
     }
 
     /**
      * Renders the image representation of the map
+     * When the static layers are baked this also renders the top layer
      *
      * @param batch
      */
-    public void render(SpriteBatch batch, OrthographicCamera cam) {
-        for (int i = 0; i < tileMap.length; i++) {
-            if (tileInsideCamera(tileMap[i], cam)) {
-                int r = i / mapWidth;
-                int c = i % mapWidth;
+    public void render(SpriteBatch batch) {
+        if (staticCache != null) {
+            staticCache.render(batch, firstRow, lastRow, firstCol, lastCol, false);
+            return;
+        }
+        for (int cy = firstRow / CHUNK_SIZE; cy <= lastRow / CHUNK_SIZE; cy++) {
+            for (int cx = firstCol / CHUNK_SIZE; cx <= lastCol / CHUNK_SIZE; cx++) {
+                MapChunk chunk = getChunkAt(cx, cy);
+                int c0 = Math.max(firstCol, chunk.x);
+                int c1 = Math.min(lastCol, chunk.x + chunk.width - 1);
+                for (int r = Math.max(firstRow, chunk.y); r <= Math.min(lastRow, chunk.y + chunk.height - 1); r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        int i = chunk.index(c, r);
 
-                if (!tileMap[i].animated && !tileMap[i].isSpecial() && tileMap[i].sprite != null) {
-                    batch.draw(tileMap[i].sprite, origin.x + c * tileSize, origin.y + r * tileSize);
+                        if (chunk.isStaticTile(i) && !Tile.isSpecial(chunk.types[i])) {
+                            batch.draw(tileSprites[chunk.tiles[i]], origin.x + c * tileSize, origin.y + r * tileSize);
+                        }
+                    }
                 }
             }
         }
@@ -294,73 +836,38 @@ public class TileMap {
      *
      * @param batch
      */
-    public void renderTopLayer(SpriteBatch batch, OrthographicCamera cam) {
-        for (int i = 0; i < topLayer.length; i++) {
-            if (tileInsideCamera(tileMap[i], cam)) {
-                int r = i / mapWidth;
-                int c = i % mapWidth;
+    public void renderTopLayer(SpriteBatch batch) {
+        if (!hasTopLayer || staticCache != null) return;
+        for (int cy = firstRow / CHUNK_SIZE; cy <= lastRow / CHUNK_SIZE; cy++) {
+            for (int cx = firstCol / CHUNK_SIZE; cx <= lastCol / CHUNK_SIZE; cx++) {
+                MapChunk chunk = getChunkAt(cx, cy);
+                int c0 = Math.max(firstCol, chunk.x);
+                int c1 = Math.min(lastCol, chunk.x + chunk.width - 1);
+                for (int r = Math.max(firstRow, chunk.y); r <= Math.min(lastRow, chunk.y + chunk.height - 1); r++) {
+                    for (int c = c0; c <= c1; c++) {
+                        int i = chunk.index(c, r);
 
-                if (topLayer[i] != null)
-                    batch.draw(topLayer[i], origin.x + c * tileSize, origin.y + r * tileSize);
+                        if (chunk.topLayer[i] != -1)
+                            batch.draw(tileSprites[chunk.topLayer[i]], origin.x + c * tileSize, origin.y + r * tileSize);
+                    }
+                }
             }
         }
     }
 
-    /**
-     * Converts a tile id corresponding to an animated tile to its animated tile format
-     *
-     * @param id
-     * @return a String with the animated tile id in the correct format
-     */
-    private String getAnimatedTileConversion(String id) {
-        if (id.startsWith("e")) return id;
-        int ret = Integer.parseInt(id);
-        if (ret == 64) return "a3|2|2";
-        if (ret == 80) return "a4|4|3";
-        if (ret == 96) return "a5|2|2";
-        if (ret == 112) return "a6|3|3";
-        if (ret == 128) return "a7|3|3";
-        if (ret == 144) return "a8|3|3";
-        if (ret == 160) return "a9|3|3";
-        if (ret == 176) return "a10|2|2";
-        if (ret == 192) return "a0|2|2";
-        if (ret == 208) return "a1|2|2";
-        if (ret == 224) return "a2|4|3";
-        if (ret == 240) return "a11|3|3";
-        if (ret == 63) return "a12|2|2";
-        if (ret == 79) return "a13|6|4";
-        if (ret == 94 || ret == 95) return "a14|2|2";
-        return id;
-    }
-
-    /**
-     * Determines if a certain tile is within the camera rendering distance.
-     *
-     * 6 tile from player x
-     * 4 tile from player y
-     *
-     * @param t
-     * @param cam map camera
-     * @return
-     */
-    public boolean tileInsideCamera(Tile t, OrthographicCamera cam) {
-        int x = (int) t.tilePosition.x * tileSize;
-        int y = (int) t.tilePosition.y * tileSize;
-        int xOffset = tileSize * 7;
-        int yOffset = tileSize * 5;
-        return x >= cam.position.x - xOffset - tileSize && x <= cam.position.x + xOffset &&
-                y >= cam.position.y - yOffset && y <= cam.position.y + yOffset;
-    }
-
     /**
      * Adds an Entity to a specific tile on the map
+     * A tile can hold any number of entities
+     * Entities that weren't spawned by the map are returned to the EnemyPool
+     * when their chunk is evicted
      *
      * @param entity
      * @param tileX
      * @param tileY
      */
     public void addEntity(Entity entity, int tileX, int tileY) {
-        tileMap[tileY * mapWidth + tileX].addEntity(entity);
+        if (occupants.contains(entity)) moveEntity(entity, tileX * tileSize, tileY * tileSize);
+        else putEntity(tileY * mapWidth + tileX, entity);
     }
 
     /**
@@ -370,17 +877,55 @@ public class TileMap {
      * @param coords
      */
     public void addEntity(Entity entity, Vector2 coords) {
-        tileMap[(int) (coords.y * mapWidth + coords.x)].addEntity(entity);
+        addEntity(entity, (int) coords.x, (int) coords.y);
     }
 
     /**
-     * Removes an Entity at a specific tile on the map
+     * Moves an Entity on the map to a position in map coordinates
+     *
+     * @param entity
+     * @param x
+     * @param y
+     */
+    public void moveEntity(Entity entity, float x, float y) {
+        entity.getPosition().set(x, y);
+        occupants.move(entity, x, y);
+    }
+
+    /**
+     * Removes every Entity at a specific tile on the map and returns them to the EnemyPool
      *
      * @param tileX
      * @param tileY
      */
     public void removeEntity(int tileX, int tileY) {
-        tileMap[tileY * mapWidth + tileX].removeEntity();
+        deleteEntity(getChunk(tileX, tileY), tileY * mapWidth + tileX);
+    }
+
+    /**
+     * Removes an Entity from the map
+     * An enemy spawned by the map does not come back when its chunk is loaded again
+     *
+     * @param entity
+     */
+    public void removeEntity(Entity entity) {
+        int k = occupants.cellOf(entity);
+        if (k == -1) return;
+        if (spawnedIDs.containsKey(entity)) getChunk(k).modified = true;
+        detachEntity(entity);
+    }
+
+    /**
+     * Removes an Entity from the map without changing its chunk
+     *
+     * @param entity
+     */
+    private void detachEntity(Entity entity) {
+        if (!occupants.remove(entity)) return;
+        spawnedIDs.remove(entity, -1);
+        int i = activeEntities.indexOf(entity, true);
+        activeEntities.removeIndex(i);
+        scheduler.remove(i);
     }
 
     /**
@@ -389,18 +934,74 @@ public class TileMap {
      * @param coords
      */
     public void removeEntity(Vector2 coords) {
-        tileMap[(int) (coords.y * mapWidth + coords.x)].removeEntity();
+        removeEntity((int) coords.x, (int) coords.y);
     }
 
     /**
      * Gets an Entity from a specific tile on the map
+     * If the tile holds more than one Entity the most recently placed is returned
      *
      * @param tileX
      * @param tileY
      * @return
      */
     public Entity getEntity(int tileX, int tileY) {
-        return tileMap[tileY * mapWidth + tileX].getEntity();
+        MapChunk chunk = getChunk(tileX, tileY);
+        if (chunk.spawns.size > 0) spawnEntity(chunk, tileY * mapWidth + tileX);
+        return occupants.first(tileX, tileY);
+    }
+
+    /**
+     * Adds every Entity on a range of tiles (inclusive) to out
+     *
+     * @param tileX0
+     * @param tileY0
+     * @param tileX1
+     * @param tileY1
+     * @param out
+     * @return the number of entities added
+     */
+    public int getEntities(int tileX0, int tileY0, int tileX1, int tileY1, Array<Entity> out) {
+        spawnEntities(tileX0, tileY0, tileX1, tileY1);
+        return occupants.query(tileX0, tileY0, tileX1, tileY1, out);
+    }
+
+    /**
+     * Adds every Entity within a radius of a position in map coordinates to out
+     *
+     * @param x
+     * @param y
+     * @param radius
+     * @param out
+     * @return the number of entities added
+     */
+    public int getEntities(float x, float y, float radius, Array<Entity> out) {
+        spawnEntities((int) Math.floor((x - radius) / tileSize), (int) Math.floor((y - radius) / tileSize),
+            (int) Math.floor((x + radius) / tileSize), (int) Math.floor((y + radius) / tileSize));
+        return occupants.queryRadius(x, y, radius, out);
+    }
+
+    /**
+     * Creates the entities waiting to be spawned on a range of tiles (inclusive)
+     * Only the chunks that have spawns left are looked at tile by tile
+     */
+    private void spawnEntities(int c0, int r0, int c1, int r1) {
+        c0 = Math.max(c0, 0);
+        r0 = Math.max(r0, 0);
+        c1 = Math.min(c1, mapWidth - 1);
+        r1 = Math.min(r1, mapHeight - 1);
+        if (c1 < c0 || r1 < r0) return;
+        for (int cy = r0 / CHUNK_SIZE; cy <= r1 / CHUNK_SIZE; cy++) {
+            for (int cx = c0 / CHUNK_SIZE; cx <= c1 / CHUNK_SIZE; cx++) {
+                MapChunk chunk = getChunkAt(cx, cy);
+                if (chunk.spawns.size == 0) continue;
+                for (int r = Math.max(r0, chunk.y); r <= Math.min(r1, chunk.y + chunk.height - 1); r++) {
+                    for (int c = Math.max(c0, chunk.x); c <= Math.min(c1, chunk.x + chunk.width - 1); c++) {
+                        spawnEntity(chunk, r * mapWidth + c);
+                    }
+                }
+            }
+        }
     }
 
     /**
@@ -410,7 +1011,7 @@ public class TileMap {
      * @return
      */
     public Entity getEntity(Vector2 coords) {
-        return tileMap[(int) (coords.y * mapWidth + coords.x)].getEntity();
+        return getEntity((int) coords.x, (int) coords.y);
     }
 
     /**
@@ -421,7 +1022,9 @@ public class TileMap {
      * @return
      */
     public boolean containsEntity(int tileX, int tileY) {
-        return tileMap[tileY * mapWidth + tileX].containsEntity();
+        int k = tileY * mapWidth + tileX;
+        return occupants.first(tileX, tileY) != null || getChunk(tileX, tileY).spawns.containsKey(k)
+            || (entityWorld != null && entityWorld.isOccupied(k));
     }
 
     /**
@@ -431,17 +1034,37 @@ public class TileMap {
      * @return
      */
     public boolean containsEntity(Vector2 coords) {
-        return tileMap[(int) (coords.y * mapWidth + coords.x)].containsEntity();
+        return containsEntity((int) coords.x, (int) coords.y);
     }
 
     /**
      * Replaces a Tile on a tile map
+     * The tile's id, animation and Entity are copied into the map
      *
      * @param tileX
      * @param tileY
      */
     public void setTile(int tileX, int tileY, Tile tile) {
-        tileMap[tileY * mapWidth + tileX] = tile;
+        int k = tileY * mapWidth + tileX;
+        MapChunk chunk = getChunk(tileX, tileY);
+        int i = chunk.index(tileX, tileY);
+        if (tile.animated) {
+            // a tile from getTile shares its kind's animation, any other animation becomes its own kind
+            int kind = animations.indexOf(tile.anim, true);
+            if (kind == -1) kind = addAnimation(tile.anim);
+            setCell(chunk, i, tile.id, kind);
+        }
+        else setCell(chunk, i, tile.id, -1);
+
+        // the tile keeps its entities when hold is one of them
+        if (tile.hold == null || occupants.cellOf(tile.hold) != k) {
+            deleteEntity(chunk, k);
+            if (tile.hold != null) addEntity(tile.hold, tileX, tileY);
+        }
+
+        if (staticCache != null) staticCache.invalidate(tileX, tileY);
+        if (lightMap != null) lightMap.invalidate(tileX, tileY);
+        transitions.update(tileX, tileY);
     }
 
     /**
@@ -451,7 +1074,7 @@ public class TileMap {
      * @param tile
      */
     public void setTile(Vector2 tilePosition, Tile tile) {
-        tileMap[(int) (tilePosition.y * mapWidth + tilePosition.x)] = tile;
+        setTile((int) tilePosition.x, (int) tilePosition.y, tile);
     }
 
     /**
@@ -462,9 +1085,66 @@ public class TileMap {
      * @param id
      */
     public void setTile(int tileX, int tileY, int id) {
-        int r = id / rm.tiles16x16[0].length;
-        int c = id % rm.tiles16x16.length;
-        tileMap[tileY * mapWidth + tileX] = new Tile(id, rm.tiles16x16[r][c], new Vector2(tileX, tileY));
+        MapChunk chunk = getChunk(tileX, tileY);
+        setCell(chunk, chunk.index(tileX, tileY), id, -1);
+        deleteEntity(chunk, tileY * mapWidth + tileX);
+        if (staticCache != null) staticCache.invalidate(tileX, tileY);
+        if (lightMap != null) lightMap.invalidate(tileX, tileY);
+        transitions.update(tileX, tileY);
+    }
+
+    /**
+     * Places a new Entity on a tile alongside any entities already on it
+     *
+     * @param k index into the tile map
+     * @param entity
+     */
+    private void putEntity(int k, Entity entity) {
+        occupants.insert(entity, (k % mapWidth) * tileSize, (k / mapWidth) * tileSize);
+        activeEntities.add(entity);
+        scheduler.insert(activeEntities.size - 1, k);
+    }
+
+    /**
+     * Removes every Entity on a tile, including one waiting to be spawned
+     * The entities are returned to the EnemyPool since nothing refers to them anymore
+     *
+     * @param chunk the chunk containing the tile
+     * @param k index into the tile map
+     */
+    private void deleteEntity(MapChunk chunk, int k) {
+        chunk.spawns.remove(k, -1);
+        chunk.modified = true;
+        if (entityWorld != null) entityWorld.remove(k);
+        Entity e;
+        while ((e = occupants.first(k % mapWidth, k / mapWidth)) != null) {
+            detachEntity(e);
+            enemyPool.free(e);
+        }
+    }
+
+    /**
+     * Returns whether an Entity is on a tile visible to the camera
+     *
+     * @param entity
+     * @return
+     */
+    boolean isVisible(Entity entity) {
+        int k = occupants.cellOf(entity);
+        int r = k / mapWidth;
+        int c = k - r * mapWidth;
+        return r >= firstRow && r <= lastRow && c >= firstCol && c <= lastCol;
+    }
+
+    /**
+     * Converts a map coordinate on either axis to a tile coordinate
+     * Used on hot paths instead of toTileCoords since it allocates nothing
+     *
+     * @param mapCoord
+     * @return
+     */
+    public int toTile(float mapCoord) {
+        return (int) (mapCoord / tileSize);
     }
 
     /**
@@ -475,11 +1155,27 @@ public class TileMap {
      * @return
      */
     public Vector2 toMapCoords(int tileX, int tileY) {
-        return new Vector2(tileX * tileSize, tileY * tileSize);
+        return toMapCoords(tileX, tileY, new Vector2());
     }
 
     public Vector2 toMapCoords(Vector2 coords) {
-        return new Vector2(coords.x * tileSize, coords.y * tileSize);
+        return toMapCoords(coords, new Vector2());
+    }
+
+    /**
+     * Out parameter versions that write into and return out
+     *
+     * @param tileX
+     * @param tileY
+     * @param out
+     * @return
+     */
+    public Vector2 toMapCoords(int tileX, int tileY, Vector2 out) {
+        return out.set(tileX * tileSize, tileY * tileSize);
+    }
+
+    public Vector2 toMapCoords(Vector2 coords, Vector2 out) {
+        return out.set(coords.x * tileSize, coords.y * tileSize);
     }
 
     /**
@@ -490,37 +1186,107 @@ public class TileMap {
      * @return
      */
     public Vector2 toTileCoords(int mapX, int mapY) {
-        return new Vector2(mapX / tileSize, mapY / tileSize);
+        return toTileCoords(mapX, mapY, new Vector2());
     }
 
     public Vector2 toTileCoords(Vector2 coords) {
-        return new Vector2(coords.x / tileSize, coords.y / tileSize);
+        return toTileCoords(coords, new Vector2());
+    }
+
+    /**
+     * Out parameter versions that write into and return out
+     *
+     * @param mapX
+     * @param mapY
+     * @param out
+     * @return
+     */
+    public Vector2 toTileCoords(int mapX, int mapY, Vector2 out) {
+        return out.set(mapX / tileSize, mapY / tileSize);
+    }
+
+    public Vector2 toTileCoords(Vector2 coords, Vector2 out) {
+        return out.set(coords.x / tileSize, coords.y / tileSize);
     }
 
     /**
-     * Returns a tile from the tile map at (x,y) tile position
+     * Returns a view of the tile at (x,y) tile position
+     * The view is a snapshot, changes to it are not written back to the map
      *
      * @return Tile
      */
     public Tile getTile(int tileX, int tileY) {
-        return tileMap[tileY * mapWidth + tileX];
+        MapChunk chunk = getChunk(tileX, tileY);
+        int i = chunk.index(tileX, tileY);
+        AnimationManager anim = chunk.anims[i] == -1 ? null : animations.get(chunk.anims[i]);
+        return new Tile(chunk.tiles[i], chunk.types[i], chunk.anims[i] == -1 ? getTileSprite(chunk.tiles[i]) : null, anim,
+            new Vector2(tileX, tileY), getEntity(tileX, tileY));
     }
 
     public Tile getTile(Vector2 coords) {
-        return tileMap[(int) (coords.y * mapWidth + coords.x)];
+        return getTile((int) coords.x, (int) coords.y);
+    }
+
+    /**
+     * Returns the type of the tile at (x,y) tile position
+     *
+     * @param tileX
+     * @param tileY
+     * @return one of the tile types in Tile
+     */
+    public int getType(int tileX, int tileY) {
+        MapChunk chunk = getChunk(tileX, tileY);
+        return chunk.types[chunk.index(tileX, tileY)];
     }
 
     /**
-     * Does the tile map contain some Tile?
+     * Returns the tile index of the bottom layer at (x,y) tile position
+     *
+     * @param tileX
+     * @param tileY
+     * @return the index into the tile sheet or -1 for no tile
+     */
+    public int getBottomTile(int tileX, int tileY) {
+        MapChunk chunk = getChunk(tileX, tileY);
+        return chunk.bottomLayer[chunk.index(tileX, tileY)];
+    }
+
+    /**
+     * Returns the tile index of the top layer at (x,y) tile position
+     *
+     * @param tileX
+     * @param tileY
+     * @return the index into the tile sheet or -1 for no tile
+     */
+    public int getTopTile(int tileX, int tileY) {
+        MapChunk chunk = getChunk(tileX, tileY);
+        return chunk.topLayer[chunk.index(tileX, tileY)];
+    }
+
+    /**
+     * Determines if the tile at (x,y) tile position is blocked
+     *
+     * @param tileX
+     * @param tileY
+     * @return
+     */
+    public boolean isBlocked(int tileX, int tileY) {
+        MapChunk chunk = getChunk(tileX, tileY);
+        return chunk.collisionMap.get(chunk.index(tileX, tileY));
+    }
+
+    /**
+     * Does the tile map still contain some Tile?
      *
      * @param tile
      * @return Boolean
      */
     public boolean mapContains(Tile tile) {
-        for (int i = 0; i < tileMap.length; i++) {
-            if (tileMap[i].equals(tile)) return true;
-        }
-        return false;
+        int tileX = (int) tile.tilePosition.x;
+        int tileY = (int) tile.tilePosition.y;
+        MapChunk chunk = getChunk(tileX, tileY);
+        int i = chunk.index(tileX, tileY);
+        return chunk.tiles[i] == tile.id && (chunk.anims[i] != -1) == tile.animated;
     }
 
     /**
@@ -530,27 +1296,60 @@ public class TileMap {
      * @return Boolean
      */
     public boolean mapContains(int id) {
-        for (int i = 0; i < tileMap.length; i++) {
-            if (tileMap[i].id == id) return true;
-        }
-        return false;
+        return tileCounts.get(id, 0) > 0;
     }
 
     /**
-     * Returns a list of teleportation tiles on the map not including
-     * the one the player is currently standing on
+     * Returns the number of tiles on the map that have a given id
      *
-     * @param currentTile
+     * @param id
      * @return
      */
-    public Array<Tile> getTeleportationTiles(Tile currentTile) {
-        Array<Tile> ret = new Array<Tile>();
-        for (int i = 0; i < tileMap.length; i++) {
-            if (tileMap[i].isTeleport() && !tileMap[i].equals(currentTile)) {
-                ret.add(tileMap[i]);
-            }
+    public int countTiles(int id) {
+        return tileCounts.get(id, 0);
+    }
+
+    /**
+     * Chooses a random teleportation tile on the map not including
+     * the one the player is currently standing on
+     *
+     * @param tileX
+     * @param tileY
+     * @return the tile index of the destination or -1 if there is no other teleportation tile
+     */
+    public int getTeleportDestination(int tileX, int tileY) {
+        int current = tileY * mapWidth + tileX;
+        int n = teleports.size - (getType(tileX, tileY) == Tile.TELEPORT ? 1 : 0);
+        if (n <= 0) return -1;
+
+        int choose = MathUtils.random(n - 1);
+        for (int i = 0; i < teleports.size; i++) {
+            if (teleports.get(i) == current) continue;
+            if (choose-- == 0) return teleports.get(i);
+        }
+        return -1;
+    }
+
+    /**
+     * Releases the baked static layers and the chunks of the map and
+     * returns the entities still on the map to the EnemyPool
+     */
+    public void dispose() {
+        if (staticCache != null) staticCache.dispose();
+        for (int i = 0; i < activeEntities.size; i++) {
+            enemyPool.free(activeEntities.get(i));
         }
-        return ret;
+        activeEntities.clear();
+        scheduler.clear();
+        occupants.clear();
+        spawnedIDs.clear();
+        if (entityWorld != null) entityWorld.clear();
+        java.util.Arrays.fill(chunks, null);
+        residentChunks.clear();
+        freeChunks.clear();
+        compacted.clear();
+        deflater.end();
+        inflater.end();
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.loreJourney.map;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.JsonValue;
+
+/**
+ * Lookup tables describing every kind of tile, loaded once at startup
+ * from maps/tiles.json so tiles are classified with a single array index.
+ *
+ * The descriptor has the format:
+ *
+ * "tiles": type name to the ids of non animated tiles of that type
+ * "animatedTiles": type name to the ids (animIndex + 96) of animated tiles of that type
+ * "animations": map file ids that are drawn as an animated tile
+ * (animIndex, numFrames, fps)
+ *
+ * Any id not listed is a normal tile.
+ *
+ * @author Ming Li
+ */
+public class TileRegistry {
+
+    // names of the tile types in the descriptor by type
+    private static final String[] TYPE_NAMES = {
+        "normal", "blocked", "change", "inAndOut", "stop", "down", "up", "right",
+        "left", "questionMark", "ice", "teleport", "exclamationMark", "end"
+    };
+
+    // id -> type
+    private static byte[] types = new byte[0];
+    private static byte[] animatedTypes = new byte[0];
+    // map file id -> animIndex | numFrames << 8 | fps << 16 (-1 if not animated)
+    private static int[] animations = new int[0];
+
+    /**
+     * Builds the lookup tables from the parsed tile descriptor
+     *
+     * @param base
+     */
+    public static void load(JsonValue base) {
+        types = createTypeTable(base.get("tiles"));
+        animatedTypes = createTypeTable(base.get("animatedTiles"));
+
+        int size = 0;
+        for (JsonValue anim : base.get("animations")) {
+            for (int id : anim.get("ids").asIntArray()) size = Math.max(size, id + 1);
+        }
+        animations = new int[size];
+        java.util.Arrays.fill(animations, -1);
+        for (JsonValue anim : base.get("animations")) {
+            int spec = anim.getInt("animIndex") | anim.getInt("numFrames") << 8 | anim.getInt("fps") << 16;
+            for (int id : anim.get("ids").asIntArray()) animations[id] = spec;
+        }
+    }
+
+    private static byte[] createTypeTable(JsonValue tiles) {
+        int size = 0;
+        for (JsonValue ids : tiles) {
+            for (int id : ids.asIntArray()) size = Math.max(size, id + 1);
+        }
+        byte[] table = new byte[size];
+        for (JsonValue ids : tiles) {
+            byte type = getTypeByName(ids.name);
+            for (int id : ids.asIntArray()) table[id] = type;
+        }
+        return table;
+    }
+
+    private static byte getTypeByName(String name) {
+        for (byte i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i].equals(name)) return i;
+        }
+        throw new GdxRuntimeException("Unknown tile type: " + name);
+    }
+
+    /**
+     * Returns the type of a tile
+     *
+     * @param id
+     * @param animated
+     * @return one of the tile types in Tile
+     */
+    public static int getType(int id, boolean animated) {
+        byte[] table = animated ? animatedTypes : types;
+        if (id < 0 || id >= table.length) return Tile.NORMAL;
+        return table[id];
+    }
+
+    public static boolean isBlocked(int id, boolean animated) {
+        return getType(id, animated) == Tile.BLOCKED;
+    }
+
+    /**
+     * Converts a map file tile id to the animation it is drawn with
+     *
+     * @param id
+     * @return animIndex | numFrames << 8 | fps << 16 or -1 if the tile is not animated
+     */
+    public static int getAnimation(int id) {
+        if (id < 0 || id >= animations.length) return -1;
+        return animations[id];
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.loreJourney.map;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * Precomputed movement on a TileMap so the player resolves where a step,
+ * a slide or a redirect takes them with a lookup instead of probing tiles.
+ *
+ * For every tile the directions that can be stepped in are stored as bits.
+ * For every ice tile and incoming direction the tile the slide ends on is stored.
+ * Arrow, change and in and out tiles redirect by their type alone so their
+ * outcomes are a table by type and incoming direction.
+ *
+ * The steps and slides are stored in the chunk of the tile they start from.
+ * The steps of a chunk are computed the first time one of them is looked up
+ * after the chunk is loaded and a slide the first time it is taken, so only
+ * the chunks the player moves through are ever computed.
+ *
+ * Directions are the ones used by Player.move: 0 - down, 1 - up, 2 - right, 3 - left
+ *
+ * @author Ming Li
+ */
+public class TransitionTable {
+
+    private static final int[] DX = { 0, 0, 1, -1 };
+    private static final int[] DY = { -1, 1, 0, 0 };
+    private static final int[] REVERSE = { 1, 0, 3, 2 };
+
+    // type -> incoming direction + 1 -> bits of the directions the player may leave in (0 if not redirected)
+    // the first column is for a player that hasn't moved yet which only arrows redirect
+    private static final byte[][] REDIRECTS = new byte[Tile.END + 1][5];
+
+    static {
+        for (int i = 0; i < 5; i++) {
+            REDIRECTS[Tile.DOWN][i] = 1 << 0;
+            REDIRECTS[Tile.UP][i] = 1 << 1;
+            REDIRECTS[Tile.RIGHT][i] = 1 << 2;
+            REDIRECTS[Tile.LEFT][i] = 1 << 3;
+        }
+        for (int dir = 0; dir < 4; dir++) {
+            // forwards or backwards
+            REDIRECTS[Tile.CHANGE][dir + 1] = (byte) (1 << dir | 1 << REVERSE[dir]);
+            // any direction other than back where the player came from
+            REDIRECTS[Tile.IN_AND_OUT][dir + 1] = (byte) (0xf & ~(1 << REVERSE[dir]));
+        }
+    }
+
+    private TileMap map;
+
+    public TransitionTable(TileMap map) {
+        this.map = map;
+    }
+
+    /**
+     * Recomputes the entries a changed tile affects: the steps into and out of it
+     * and every slide that could cross it (ice in the same row or column)
+     * Only resident chunks have entries, evicted chunks are computed again once loaded
+     *
+     * @param tileX
+     * @param tileY
+     */
+    public void update(int tileX, int tileY) {
+        updateExits(tileX, tileY);
+        for (int dir = 0; dir < 4; dir++) {
+            int x = tileX + DX[dir];
+            int y = tileY + DY[dir];
+            if (x >= 0 && x < map.mapWidth && y >= 0 && y < map.mapHeight) updateExits(x, y);
+        }
+        // slides are only computed again once they are taken
+        int chunkX = tileX / TileMap.CHUNK_SIZE;
+        int chunkY = tileY / TileMap.CHUNK_SIZE;
+        Array<MapChunk> chunks = map.getLoadedChunks();
+        for (int i = 0; i < chunks.size; i++) {
+            MapChunk chunk = chunks.get(i);
+            if (chunk.x / TileMap.CHUNK_SIZE == chunkX || chunk.y / TileMap.CHUNK_SIZE == chunkY) chunk.slides.clear();
+        }
+    }
+
+    private void updateExits(int tileX, int tileY) {
+        MapChunk chunk = map.getLoadedChunk(tileX, tileY);
+        if (chunk != null && chunk.hasExits) chunk.exits[chunk.index(tileX, tileY)] = computeExits(tileX, tileY);
+    }
+
+    /**
+     * Computes the steps from every tile of a chunk
+     * Tiles on the edges of the chunk look at the tiles of the neighbouring chunks
+     */
+    private void computeExits(MapChunk chunk) {
+        for (int r = chunk.y; r < chunk.y + chunk.height; r++) {
+            for (int c = chunk.x; c < chunk.x + chunk.width; c++) {
+                chunk.exits[chunk.index(c, r)] = computeExits(c, r);
+            }
+        }
+        chunk.hasExits = true;
+    }
+
+    /**
+     * A step can't be taken into a blocked tile or onto the border of the map
+     */
+    private byte computeExits(int x, int y) {
+        byte bits = 0;
+        if (y - 1 > 0 && !map.isBlocked(x, y - 1)) bits |= 1 << 0;
+        if (y + 1 < map.mapHeight - 1 && !map.isBlocked(x, y + 1)) bits |= 1 << 1;
+        if (x + 1 < map.mapWidth - 1 && !map.isBlocked(x + 1, y)) bits |= 1 << 2;
+        if (x - 1 > 0 && !map.isBlocked(x - 1, y)) bits |= 1 << 3;
+        return bits;
+    }
+
+    private int getExits(int k) {
+        MapChunk chunk = map.getChunk(k);
+        if (!chunk.hasExits) computeExits(chunk);
+        return chunk.exits[chunk.index(k % map.mapWidth, k / map.mapWidth)];
+    }
+
+    /**
+     * Follows a slide entering ice tile k in a direction until it reaches a tile
+     * that is not ice or an ice tile it can't leave
+     */
+    private int computeSlide(int k, int dir) {
+        int step = DY[dir] * map.mapWidth + DX[dir];
+        int end = k;
+        while (map.getType(end % map.mapWidth, end / map.mapWidth) == Tile.ICE && (getExits(end) & 1 << dir) != 0) end += step;
+        return end;
+    }
+
+    /**
+     * Returns the tile index a step from a tile in a direction ends on
+     *
+     * @param k index into the tile map
+     * @param dir
+     * @return k if the step is blocked
+     */
+    public int getStep(int k, int dir) {
+        if ((getExits(k) & 1 << dir) == 0) return k;
+        return k + DY[dir] * map.mapWidth + DX[dir];
+    }
+
+    /**
+     * Returns the tile index a slide entering a tile in a direction ends on
+     *
+     * @param k index into the tile map
+     * @param dir -1 if the player hasn't moved yet
+     * @return k if the tile is not ice or the slide can't continue
+     */
+    public int getSlide(int k, int dir) {
+        if (dir == -1) return k;
+        MapChunk chunk = map.getChunk(k);
+        int i = chunk.index(k % map.mapWidth, k / map.mapWidth);
+        if (chunk.types[i] != Tile.ICE) return k;
+        int end = chunk.slides.get(i << 2 | dir, -1);
+        if (end == -1) {
+            end = computeSlide(k, dir);
+            chunk.slides.put(i << 2 | dir, end);
+        }
+        return end;
+    }
+
+    /**
+     * Returns the directions a tile can send the player in when entered in a direction
+     *
+     * @param k index into the tile map
+     * @param dir -1 if the player hasn't moved yet
+     * @return bits of the possible directions, 0 if the tile doesn't redirect
+     * and a single bit if the outcome is deterministic
+     */
+    public int getRedirects(int k, int dir) {
+        return REDIRECTS[map.getType(k % map.mapWidth, k / map.mapWidth)][dir + 1];
+    }
+
+}
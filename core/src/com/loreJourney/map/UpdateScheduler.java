@@ -0,0 +1,227 @@
+package com.loreJourney.map;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.loreJourney.entity.Entity;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Decides which entities of a TileMap are updated each frame.
+ *
+ * Entities on visible tiles are updated every frame. Entities off screen
+ * are updated every offscreenInterval frames with the time accumulated
+ * since their last update. Off screen updates stop once the frame has spent
+ * budget nanoseconds updating entities and continue next frame from
+ * the first entity that was left out.
+ *
+ * If parallel is set, a pool is supplied and enough entities are due,
+ * Entity.simulate is run for every due entity across the pool and Entity.apply is then called
+ * on the render thread in the same order as a single threaded update.
+ * The budget is then enforced with the cost per entity of the last parallel frame.
+ *
+ * @author Ming Li
+ */
+public class UpdateScheduler {
+
+    // off screen entities are updated once every this many frames
+    public int offscreenInterval = 4;
+    // nanoseconds of entity updates per frame (0 for no limit)
+    public long budget;
+    // simulates entities across cores when at least parallelThreshold are due
+    public boolean parallel;
+    public int parallelThreshold = 512;
+    // threads to simulate on, supplied by the launcher since ForkJoinPool.commonPool
+    // is not available on every Android version (null to stay single threaded)
+    public ForkJoinPool pool;
+
+    // counters of the last frame
+    // entities that were updated
+    public int ticked;
+    // off screen entities that were not due this frame
+    public int deferred;
+    // off screen entities that were due but over budget
+    public int skipped;
+
+    private int frame;
+    // index of the next off screen entity to update
+    private int cursor;
+
+    // parallel to the entities of the TileMap
+    // time accumulated since the entity was last updated
+    private FloatArray pending;
+    // frame the entity was last updated
+    private IntArray updated;
+
+    // indices of the entities to simulate this frame when running in parallel
+    private IntArray due;
+    private Simulate[] tasks;
+    private RecursiveAction root;
+    // nanoseconds per entity of the last parallel frame
+    private long cost;
+
+    public UpdateScheduler() {
+        pending = new FloatArray();
+        updated = new IntArray();
+        due = new IntArray();
+    }
+
+    /**
+     * Tracks an entity inserted into the entities of the TileMap at index i
+     *
+     * @param i
+     * @param k tile index of the entity
+     */
+    void insert(int i, int k) {
+        pending.insert(i, 0);
+        // staggered by tile so off screen entities are spread across frames
+        updated.insert(i, frame - k % Math.max(offscreenInterval, 1));
+    }
+
+    void remove(int i) {
+        pending.removeIndex(i);
+        updated.removeIndex(i);
+    }
+
+    void clear() {
+        pending.clear();
+        updated.clear();
+        cursor = 0;
+    }
+
+    /**
+     * Updates the entities that are due this frame
+     *
+     * @param map
+     * @param entities
+     * @param dt
+     */
+    void update(TileMap map, Array<Entity> entities, float dt) {
+        ticked = deferred = skipped = 0;
+        frame++;
+        int n = entities.size;
+        if (n == 0) return;
+        long start = TimeUtils.nanoTime();
+        // the set of due entities is always chosen on this thread so the result
+        // does not depend on the number of threads
+        boolean parallel = this.parallel && pool != null && n >= parallelThreshold;
+        due.clear();
+
+        // visible entities first so they are never left out
+        for (int i = 0; i < n; i++) {
+            pending.incr(i, dt);
+            if (map.isVisible(entities.get(i))) {
+                if (parallel) due.add(i);
+                else tick(entities, i);
+            }
+        }
+
+        // off screen entities round robin from where the last frame stopped
+        // entities left out stay due until they are updated
+        if (cursor >= n) cursor = 0;
+        int next = -1;
+        int interval = Math.max(offscreenInterval, 1);
+        for (int j = 0; j < n; j++) {
+            int i = (cursor + j) % n;
+            if (map.isVisible(entities.get(i))) continue;
+            if (frame - updated.get(i) < interval) {
+                deferred++;
+                continue;
+            }
+            if (overBudget(parallel, start)) {
+                if (next == -1) next = i;
+                skipped++;
+                continue;
+            }
+            if (parallel) due.add(i);
+            else tick(entities, i);
+        }
+        if (next != -1) cursor = next;
+
+        if (parallel && due.size > 0) {
+            long t = TimeUtils.nanoTime();
+            simulate(entities);
+            // apply phase on this thread in entity order
+            for (int j = 0; j < due.size; j++) {
+                int i = due.get(j);
+                entities.get(i).apply();
+                pending.set(i, 0);
+                updated.set(i, frame);
+            }
+            ticked += due.size;
+            cost = (TimeUtils.nanoTime() - t) / due.size;
+        }
+    }
+
+    private boolean overBudget(boolean parallel, long start) {
+        if (budget <= 0) return false;
+        if (parallel) return cost > 0 && due.size * cost >= budget;
+        return TimeUtils.nanoTime() - start >= budget;
+    }
+
+    /**
+     * Runs Entity.simulate for every due entity split into
+     * one contiguous slice per thread of the pool
+     *
+     * @param entities
+     */
+    private void simulate(Array<Entity> entities) {
+        int threads = Math.max(pool.getParallelism(), 1);
+        if (tasks == null || tasks.length != threads) {
+            tasks = new Simulate[threads];
+            for (int i = 0; i < tasks.length; i++) tasks[i] = new Simulate();
+            root = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            };
+        }
+        int slice = (due.size + tasks.length - 1) / tasks.length;
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i].reinitialize();
+            tasks[i].from = Math.min(i * slice, due.size);
+            tasks[i].to = Math.min(tasks[i].from + slice, due.size);
+            tasks[i].entities = entities;
+            tasks[i].due = due;
+            tasks[i].pending = pending;
+        }
+        root.reinitialize();
+        pool.invoke(root);
+        for (int i = 0; i < tasks.length; i++) tasks[i].entities = null;
+    }
+
+    private void tick(Array<Entity> entities, int i) {
+        entities.get(i).update(pending.get(i));
+        pending.set(i, 0);
+        updated.set(i, frame);
+        ticked++;
+    }
+
+    /**
+     * Simulates the due entities from index from to index to (exclusive)
+     */
+    private static class Simulate extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private int from;
+        private int to;
+        private Array<Entity> entities;
+        private IntArray due;
+        private FloatArray pending;
+
+        @Override
+        protected void compute() {
+            for (int j = from; j < to; j++) {
+                int i = due.get(j);
+                entities.get(i).simulate(pending.get(i));
+            }
+        }
+
+    }
+
+}
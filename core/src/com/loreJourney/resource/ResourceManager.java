@@ -4,6 +4,7 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.assets.AssetManager;
 import com.badlogic.gdx.audio.Music;
 import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
@@ -14,11 +15,13 @@ import com.badlogic.gdx.scenes.scene2d.utils.TextureRegionDrawable;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.JsonReader;
 import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.LongMap;
 // REMOVED: import com.loreJourney.battle.Move;
 // REMOVED: Inventory system disabled
 // import com.loreJourney.inventory.Item;
 // import com.loreJourney.inventory.ShopItem;
 import com.loreJourney.map.Level;
+import com.loreJourney.map.TileRegistry;
 import com.loreJourney.map.World;
 
 /**
@@ -101,6 +104,10 @@ public class ResourceManager {
     // Worlds
     public Array<World> worlds = new Array<World>();
 
+    // shared animation definitions (see getAnimation)
+    private LongMap<Animation> animations = new LongMap<Animation>();
+    private Array<TextureRegion[][]> animationSheets = new Array<TextureRegion[][]>();
+
     // Fonts
     public final BitmapFont pixel10;
 
@@ -206,6 +213,7 @@ public class ResourceManager {
         finish = assetManager.get("sfx/finish.ogg", Sound.class);
 
         loadWorlds();
+        loadTiles();
         // loadMoves(); // REMOVED: No longer loading moves system
         // loadItems(); // REMOVED: Inventory system disabled
 
@@ -257,6 +265,43 @@ public class ResourceManager {
         }
     }
 
+    private void loadTiles() {
+        // parse tiles.json
+        TileRegistry.load(jsonReader.parse(Gdx.files.internal("maps/tiles.json")));
+    }
+
+    /**
+     * Returns the shared definition of an animation of consecutive frames on a row of a sprite sheet
+     * Definitions are immutable so every entity playing the same animation shares its frames
+     * and only keeps its own playback state (see AnimationManager)
+     *
+     * @param sprites
+     * @param row
+     * @param startIndex
+     * @param numFrames
+     * @param delay
+     * @return
+     */
+    public Animation getAnimation(TextureRegion[][] sprites, int row, int startIndex, int numFrames, float delay) {
+        int sheet = animationSheets.indexOf(sprites, true);
+        if (sheet == -1) {
+            animationSheets.add(sprites);
+            sheet = animationSheets.size - 1;
+        }
+        long key = (long) Float.floatToIntBits(delay) << 32 | (sheet << 24 | row << 16 | startIndex << 8 | numFrames) & 0xffffffffL;
+
+        Animation animation = animations.get(key);
+        if (animation == null) {
+            TextureRegion[] frames = new TextureRegion[numFrames];
+            for (int i = 0; i < numFrames; i++) {
+                frames[i] = sprites[row][startIndex + i];
+            }
+            animation = new Animation(delay, frames);
+            animations.put(key, animation);
+        }
+        return animation;
+    }
+
     /**
      * Sets the volume of all music in the game
      * @param volume
@@ -4,10 +4,6 @@ import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.ui.Label;
-import com.loreJourney.entity.Entity;
-import com.loreJourney.entity.enemy.Boss;
-import com.loreJourney.entity.enemy.Normal;
-import com.loreJourney.map.TileMap;
 
 /**
  * Stores useful constants and functions
@@ -150,63 +146,4 @@ public class Util {
         return null;
     }
 
-    // Map
-
-    // all blocked tile ids
-    public static final int[] BLOCKED_TILE_IDS = {
-        5, 6, 7, 9, 10, 11, 12, 13, 14, 15, 25, 26, 27, 28, 29, 30, 31, 36,
-        38, 41, 42, 48, 49, 50, 51, 54, 55, 64, 65, 66, 67, 70, 84, 85, 86,
-        87, 88, 91, 92, 96, 97, 98, 99, 100, 101, 102, 103, 104, 105, 106, 107, 112,
-        113, 114, 115, 116, 117, 118, 120, 121, 123, 128, 129, 130, 130, 131, 132,
-        133, 134, 135, 136, 137, 138, 139, 144, 145, 146, 147, 156, 157, 165, 166,
-        151, 152, 167, 168, 169, 170, 184, 185, 186, 197, 198, 199, 200, 201, 202,
-        215, 216, 217, 218, 227, 228, 229, 230, 231, 232, 233, 234, 235, 243, 244,
-        247, 249, 263, 264, 265, 266, 267, 268, 269
-    };
-
-    public static final int[] BLOCKED_ANIMATED_TILE_IDS = { 96, 109 };
-
-    public static boolean isBlockedTile(int id) {
-        for (int i = 0; i < BLOCKED_TILE_IDS.length; i++) {
-            if (id == BLOCKED_TILE_IDS[i]) return true;
-        }
-        return false;
-    }
-
-    public static boolean isBlockedAnimatedTile(int id) {
-        for (int i = 0; i < BLOCKED_ANIMATED_TILE_IDS.length; i++) {
-            if (id == BLOCKED_ANIMATED_TILE_IDS[i]) return true;
-        }
-        return false;
-    }
-
-    /**
-     * Returns an instance of an Entity based on numerical Entity id
-     *
-     * @param id
-     * @param position
-     * @param map
-     * @param rm
-     * @return
-     */
-    public static Entity getEntity(int id, Vector2 position, TileMap map, ResourceManager rm) {
-        switch (id) {
-            case 2: return new Normal("slime", position, map, rm, 1, 0, 2, 1 / 3f);
-            case 3: return new Normal("blue slime", position, map, rm, 1, 2, 2, 1 / 3f);
-            case 4: return new Normal("blast slime", position, map, rm, 1, 4, 2, 1 / 3f);
-            case 5: return new Boss("slime king", 0, position, map, rm, 1, 6, 2, 1 / 3f);
-            case 6: return new Normal("ghost", position, map, rm, 2, 0, 2, 1 / 3f);
-            case 7: return new Normal("zombie", position, map, rm, 2, 2, 2, 1 / 3f);
-            case 8: return new Normal("skeleton", position, map, rm, 2, 4, 2, 1 / 3f);
-            case 9: return new Normal("witch", position, map, rm, 2, 6, 2, 1 / 3f);
-            case 10: return new Boss("red reaper", 1, position, map, rm, 2, 8, 2, 1 / 3f);
-            case 11: return new Normal("snow puff", position, map, rm, 3, 0, 2, 1 / 3f);
-            case 12: return new Normal("angry penguin", position, map, rm, 3, 2, 2, 1 / 3f);
-            case 13: return new Normal("yeti", position, map, rm, 3, 4, 2, 1 / 3f);
-            case 14: return new Normal("ice bat", position, map, rm, 3, 6, 2, 1 / 3f);
-            case 15: return new Boss("ice golem", 2, position, map, rm, 3, 8, 2, 1 / 3f);
-        }
-        return null;
-    }
-
 }
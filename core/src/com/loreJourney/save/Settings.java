@@ -20,4 +20,22 @@ public class Settings {
     public boolean showWeatherAnimations = true;
     public boolean showFps = false;
 
+    // rendering
+    // bakes the static map layers into a SpriteCache at map load
+    public boolean staticTileCache = true;
+    // enemies are created once they are this many tiles away from the screen
+    public int enemySpawnRadius = 4;
+    // stores enemies as Ashley components instead of Enemy objects
+    public boolean entityComponentSystem = false;
+    // enemies off screen are updated once every this many frames
+    public int offscreenUpdateInterval = 4;
+    // milliseconds per frame spent updating enemies (0 for no limit)
+    public float entityUpdateBudget = 2.f;
+    // simulates enemies across cores on large maps (only where the launcher supplies threads)
+    public boolean parallelEntityUpdate = false;
+    // scales the number of weather particles to the frame rate
+    public boolean adaptiveWeather = true;
+    // weather particles wrap around the screen instead of dying and respawning
+    public boolean wrapWeather = true;
+
 }
@@ -4,7 +4,9 @@ import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.InputMultiplexer;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.actions.Actions;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.loreJourney.event.EventState;
 import com.loreJourney.main.LoreJourney;
 import com.loreJourney.map.GameMap;
@@ -32,6 +34,13 @@ public class GameScreen extends AbstractScreen {
     private int worldIndex;
     private int levelIndex;
 
+    // length of a simulation step in seconds
+    public static final float STEP = 1 / 120f;
+    // the most simulation steps run in a frame
+    public static final int MAX_STEPS = 8;
+    // time not yet simulated
+    private float accumulator;
+
     // whether or not to reset the game map on show
     // used for transitioning between screen during a pause
     public boolean resetGame = true;
@@ -95,20 +104,21 @@ public class GameScreen extends AbstractScreen {
      * Updates the camera position to follow the player unless he's on the edges of the map
      */
     public void updateCamera() {
+        Vector2 p = gameMap.player.getRenderPosition();
         // camera directs on the player
-        if (gameMap.player.getPosition().x <= gameMap.tileMap.mapWidth * 16 - 7 * 16 &&
-            gameMap.player.getPosition().x >= 6 * 16)
-            cam.position.x = gameMap.player.getPosition().x + 8;
-        if (gameMap.player.getPosition().y <= gameMap.tileMap.mapHeight * 16 - 4 * 16 &&
-            gameMap.player.getPosition().y >= 4 * 16 - 8)
-            cam.position.y = gameMap.player.getPosition().y + 4;
+        if (p.x <= gameMap.tileMap.mapWidth * 16 - 7 * 16 &&
+            p.x >= 6 * 16)
+            cam.position.x = p.x + 8;
+        if (p.y <= gameMap.tileMap.mapHeight * 16 - 4 * 16 &&
+            p.y >= 4 * 16 - 8)
+            cam.position.y = p.y + 4;
         cam.update();
 
-        if (gameMap.player.getPosition().x < 6 * 16) cam.position.x = 104;
-        if (gameMap.player.getPosition().y < 4 * 16 - 8) cam.position.y = 60.5f;
-        if (gameMap.player.getPosition().x > gameMap.tileMap.mapWidth * 16 - 7 * 16)
+        if (p.x < 6 * 16) cam.position.x = 104;
+        if (p.y < 4 * 16 - 8) cam.position.y = 60.5f;
+        if (p.x > gameMap.tileMap.mapWidth * 16 - 7 * 16)
             cam.position.x = (gameMap.tileMap.mapWidth * 16 - 7 * 16) + 8;
-        if (gameMap.player.getPosition().y > gameMap.tileMap.mapHeight * 16 - 4 * 16)
+        if (p.y > gameMap.tileMap.mapHeight * 16 - 4 * 16)
             cam.position.y = (gameMap.tileMap.mapHeight * 16 - 4 * 16) + 4;
     }
 
@@ -119,11 +129,32 @@ public class GameScreen extends AbstractScreen {
         }
 
         if (currentEvent == EventState.MOVING) {
-            updateCamera();
+            // the map is simulated in fixed steps so gameplay doesn't depend on the frame rate
+            accumulator += dt;
+            int steps = 0;
+            while (accumulator >= STEP && steps < MAX_STEPS && currentEvent == EventState.MOVING) {
+                gameMap.update(STEP);
+                accumulator -= STEP;
+                steps++;
+            }
+            // enemies are scheduled per frame with the time the steps simulated
+            if (steps > 0) gameMap.updateEntities(steps * STEP);
+            if (currentEvent != EventState.MOVING) {
+                // an event stopped the steps so the time left over is dropped and
+                // the player is drawn on the tile it stopped on for the whole event
+                accumulator = 0;
+                gameMap.player.interpolate(1);
+            }
+            else {
+                // after a long hitch the remaining time is dropped instead of caught up
+                if (steps == MAX_STEPS) accumulator %= STEP;
+                gameMap.player.interpolate(accumulator / STEP);
+            }
 
-            gameMap.update(dt);
+            updateCamera();
             hud.update(dt);
         }
+        else accumulator = 0;
 
         if (currentEvent == EventState.TILE_EVENT) dialog.update(dt);
         // REMOVED: Inventory system disabled
@@ -131,20 +162,26 @@ public class GameScreen extends AbstractScreen {
     }
 
     public void render(float dt) {
+        long start = TimeUtils.nanoTime();
         update(dt);
 
         // clear screen
         Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
         if (renderBatch) {
-            game.batch.begin();
+            boolean renderMap = currentEvent == EventState.MOVING || currentEvent == EventState.INVENTORY ||
+                currentEvent == EventState.TILE_EVENT ||
+                currentEvent == EventState.DEATH || currentEvent == EventState.PAUSE;
 
             // fix fading
             if (batchFade) game.batch.setColor(Color.WHITE);
 
-            if (currentEvent == EventState.MOVING || currentEvent == EventState.INVENTORY ||
-                currentEvent == EventState.TILE_EVENT ||
-                currentEvent == EventState.DEATH || currentEvent == EventState.PAUSE) {
+            // lights of dark maps are drawn into their own buffer first
+            if (renderMap) gameMap.renderLightMap(dt, game.batch, cam);
+
+            game.batch.begin();
+
+            if (renderMap) {
                 // map camera
                 game.batch.setProjectionMatrix(cam.combined);
                 // render map and player
@@ -152,6 +189,8 @@ public class GameScreen extends AbstractScreen {
             }
 
             game.batch.end();
+            // the light map is composited last and leaves its blend function behind
+            game.batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
         }
 
         if (currentEvent == EventState.MOVING || currentEvent == EventState.DEATH || currentEvent == EventState.PAUSE)
@@ -160,6 +199,10 @@ public class GameScreen extends AbstractScreen {
         // REMOVED: Inventory system disabled
         // if (currentEvent == EventState.INVENTORY) game.inventoryUI.render(dt);
 
+        if (currentEvent == EventState.MOVING) {
+            gameMap.updateParticleBudget(dt, (TimeUtils.nanoTime() - start) / 1000000000f);
+        }
+
         //game.profile("GameScreen");
     }
 
@@ -167,6 +210,7 @@ public class GameScreen extends AbstractScreen {
         super.dispose();
         hud.dispose();
         dialog.dispose();
+        gameMap.dispose();
     }
 
     /**
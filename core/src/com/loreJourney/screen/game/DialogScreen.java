@@ -2,7 +2,6 @@ package com.loreJourney.screen.game;
 
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
-import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
 import com.badlogic.gdx.scenes.scene2d.Touchable;
 import com.badlogic.gdx.scenes.scene2d.ui.Image;
@@ -11,7 +10,6 @@ import com.badlogic.gdx.scenes.scene2d.utils.ClickListener;
 import com.badlogic.gdx.utils.Align;
 import com.loreJourney.entity.Player;
 import com.loreJourney.event.EventState;
-import com.loreJourney.map.Tile;
 import com.loreJourney.map.TileMap;
 import com.loreJourney.resource.ResourceManager;
 import com.loreJourney.resource.Util;
@@ -195,9 +193,8 @@ public class DialogScreen extends UI {
         switch (event) {
             case MOVING:
                 player.finishTileInteraction();
-                TextureRegion none = null;
-                gameScreen.gameMap.tileMap.setTile(gameScreen.gameMap.tileMap.toTileCoords(player.getPosition()),
-                        new Tile(-1, none, gameScreen.gameMap.tileMap.toTileCoords(player.getPosition())));
+                // clear the interaction tile the player is standing on
+                gameScreen.gameMap.tileMap.setTile(player.getTileX(), player.getTileY(), -1);
                 // player died from tile
                 if (player.getHp() <= 0) {
                     gameScreen.gameMap.setDeath();
@@ -0,0 +1,133 @@
+package com.loreJourney.main.desktop;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector2;
+import com.loreJourney.entity.Player;
+import com.loreJourney.entity.enemy.EnemyPool;
+import com.loreJourney.map.TileMap;
+import com.loreJourney.resource.ResourceManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the bytes allocated per frame while the player walks around a map
+ *
+ * The player walks straight and turns in a random open direction when the
+ * next tile is blocked (and now and then anyway so the walk spreads over the map).
+ * Interactions and teleports are finished straight away like GameMap does.
+ * After a warmup the bytes the thread allocated are read from the JVM, which
+ * needs a HotSpot based JVM. The tiles crossed and the distinct tiles reached
+ * during the measured frames are printed so the result shows how much of the
+ * movement code actually ran.
+ *
+ * Usage: AllocationCheck [map paths] (defaults to a map with many interaction
+ * tiles and a map with interaction and teleport tiles)
+ * Run from the assets directory (gradle task desktop:allocationCheck)
+ */
+public class AllocationCheck {
+
+    private static final int WARMUP_FRAMES = 15000;
+    private static final int FRAMES = 15000;
+    private static final String[] DEFAULT_MAPS = { "maps/w0_l2.txt", "maps/w2_l7.txt" };
+
+    public static void main(final String[] args) {
+        new HeadlessApplication(new ApplicationAdapter() {
+            @Override
+            public void create() {
+                for (String path : args.length > 0 ? args : DEFAULT_MAPS) run(path);
+                Gdx.app.exit();
+            }
+        });
+    }
+
+    private static void run(String path) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            System.err.println("Allocated bytes per thread are not available on this JVM");
+            return;
+        }
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) threads;
+        long thread = Thread.currentThread().getId();
+
+        StubGL.install();
+        ResourceManager rm = new ResourceManager();
+        TileMap map = new TileMap(16, path, new Vector2(), new EnemyPool(rm), rm);
+        Player player = new Player("player", rm);
+        player.settings.muteSfx = true;
+        player.setMap(map);
+
+        MathUtils.random.setSeed(1);
+        boolean[] reached = new boolean[map.mapWidth * map.mapHeight];
+        int x = player.getTileX();
+        int y = player.getTileY();
+        int dir = 2;
+        long start = 0;
+        int crossed = 0;
+        int distinct = 0;
+        int interactions = 0;
+        int teleports = 0;
+        for (int i = 0; i < WARMUP_FRAMES + FRAMES; i++) {
+            boolean measured = i >= WARMUP_FRAMES;
+            if (i == WARMUP_FRAMES) start = mx.getThreadAllocatedBytes(thread);
+            if (player.isTileInteraction()) {
+                player.finishTileInteraction();
+                if (measured) interactions++;
+            }
+            boolean teleported = player.isTeleporting();
+            if (teleported) {
+                player.finishTeleporting();
+                if (measured) teleports++;
+            }
+            if (player.canMove()) {
+                if (player.nextTileBlocked(dir) || MathUtils.random(15) == 0) dir = turn(player, dir);
+                if (!player.nextTileBlocked(dir)) player.move(dir);
+            }
+            // the map is walked on after reaching the end
+            player.completedMap = false;
+            player.update(1 / 60f);
+            map.update(1 / 60f);
+            map.updateEntities(1 / 60f);
+
+            int nx = player.getTileX();
+            int ny = player.getTileY();
+            if (nx == x && ny == y) continue;
+            // a slide crosses every tile on the way, a teleport crosses none
+            if (measured && !teleported) crossed += Math.abs(nx - x) + Math.abs(ny - y);
+            x = nx;
+            y = ny;
+            if (measured && !reached[y * map.mapWidth + x]) {
+                reached[y * map.mapWidth + x] = true;
+                distinct++;
+            }
+        }
+        long allocated = mx.getThreadAllocatedBytes(thread) - start;
+        System.out.printf("%s: %d frames, %d tiles crossed, %d distinct tiles, %d interactions, %d teleports: %.1f bytes/frame%n",
+            path, FRAMES, crossed, distinct, interactions, teleports, allocated / (double) FRAMES);
+        rm.dispose();
+    }
+
+    /**
+     * Picks a random direction the player can move in
+     *
+     * @param player
+     * @param dir the current direction, kept if every direction is blocked
+     * @return
+     */
+    private static int turn(Player player, int dir) {
+        int open = 0;
+        for (int d = 0; d < 4; d++) {
+            if (!player.nextTileBlocked(d)) open |= 1 << d;
+        }
+        if (open == 0) return dir;
+        int choose = MathUtils.random(Integer.bitCount(open) - 1);
+        for (int d = 0; d < 4; d++) {
+            if ((open & 1 << d) != 0 && choose-- == 0) return d;
+        }
+        return dir;
+    }
+
+}
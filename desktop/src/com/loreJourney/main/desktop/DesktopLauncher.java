@@ -5,6 +5,8 @@ import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import com.loreJourney.main.LoreJourney;
 
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * Desktop version access
  */
@@ -22,7 +24,8 @@ public class DesktopLauncher {
         config.addIcon("desktop_icon128.png", Files.FileType.Internal);
         config.addIcon("desktop_icon32.png", Files.FileType.Internal);
         config.addIcon("desktop_icon16.png", Files.FileType.Internal);
-        new LwjglApplication(new LoreJourney(), config);
+        // ForkJoinPool.commonPool needs Android API 24 so the pool is only supplied here
+        new LwjglApplication(new LoreJourney(ForkJoinPool.commonPool()), config);
     }
 
 }
@@ -0,0 +1,132 @@
+package com.loreJourney.main.desktop;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.math.Vector2;
+import com.loreJourney.entity.enemy.EnemyPool;
+import com.loreJourney.map.MapFormat;
+import com.loreJourney.map.TileMap;
+import com.loreJourney.resource.ResourceManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Measures the CPU cost of rendering the tile layers of generated square maps
+ * with the camera at the center, on the headless backend with a stub GL
+ * The maps are compiled (see MapFormat) so their chunks are streamed like the game's
+ *
+ * Every frame sets the view and renders the bottom layer, the middle layer
+ * and the top layer, the same passes as GameMap.render. Each map is measured
+ * twice: uncached, where every static tile goes through the SpriteBatch, and
+ * cached, where the static layers are baked into a StaticTileCache as they are
+ * by default (Settings.staticTileCache). The stub GL can't measure GPU time so
+ * the quads streamed to the GPU per frame are reported with the CPU time.
+ *
+ * Usage: MapBenchmark [map sizes...] (defaults to 40 500 2000)
+ * Run from the assets directory (gradle task desktop:benchmark)
+ */
+public class MapBenchmark {
+
+    private static final int WARMUP_FRAMES = 200;
+    private static final int FRAMES = 2000;
+
+    public static void main(final String[] args) {
+        new HeadlessApplication(new ApplicationAdapter() {
+            @Override
+            public void create() {
+                try {
+                    run(args);
+                }
+                catch (IOException e) {
+                    e.printStackTrace();
+                }
+                Gdx.app.exit();
+            }
+        });
+    }
+
+    private static void run(String[] args) throws IOException {
+        StubGL gl = StubGL.install();
+        ResourceManager rm = new ResourceManager();
+        SpriteBatch batch = new SpriteBatch();
+        OrthographicCamera cam = new OrthographicCamera(200, 120);
+        File file = File.createTempFile("benchmark", MapFormat.EXTENSION);
+        file.deleteOnExit();
+
+        String[] sizes = args.length > 0 ? args : new String[] { "40", "500", "2000" };
+        for (String size : sizes) {
+            int n = Integer.parseInt(size);
+            Files.write(file.toPath(), MapFormat.compile(generate(n, n).getBytes(StandardCharsets.UTF_8)));
+            for (boolean cached : new boolean[] { false, true }) {
+                TileMap map = new TileMap(16, file.getAbsolutePath(), new Vector2(), new EnemyPool(rm), rm);
+                if (cached) map.bakeStaticLayers();
+                cam.position.set(n * 8, n * 8, 0);
+                cam.update();
+                batch.setProjectionMatrix(cam.combined);
+
+                render(map, cam, batch, WARMUP_FRAMES);
+                gl.drawCalls = 0;
+                gl.streamedQuads = 0;
+                long start = System.nanoTime();
+                render(map, cam, batch, FRAMES);
+                long time = System.nanoTime() - start;
+                System.out.printf("%dx%d %s: %.1f us/frame, %.1f draw calls/frame, %.0f quads streamed/frame%n",
+                    n, n, cached ? "cached" : "uncached", time / 1000.0 / FRAMES, gl.drawCalls / (double) FRAMES,
+                    gl.streamedQuads / (double) FRAMES);
+                map.dispose();
+            }
+        }
+        batch.dispose();
+        rm.dispose();
+    }
+
+    private static void render(TileMap map, OrthographicCamera cam, SpriteBatch batch, int frames) {
+        for (int i = 0; i < frames; i++) {
+            batch.begin();
+            map.setView(cam);
+            map.renderBottomLayer(batch);
+            map.render(batch);
+            map.renderTopLayer(batch);
+            batch.end();
+        }
+    }
+
+    /**
+     * Writes a text map with a full bottom layer, animated tiles and enemies
+     * scattered over the middle layer and a top layer on every fifth column
+     *
+     * @param width
+     * @param height
+     * @return
+     */
+    static String generate(int width, int height) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(width).append('\n').append(height).append("\n4\n4\n0\n0\n");
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) sb.append(249).append(',');
+            sb.append('\n');
+        }
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) {
+                if ((c + r) % 7 == 0) sb.append(192);
+                else if ((c * 31 + r) % 13 == 0) sb.append("e2");
+                else sb.append(0);
+                sb.append(',');
+            }
+            sb.append('\n');
+        }
+        sb.append("1\n");
+        for (int r = 0; r < height; r++) {
+            for (int c = 0; c < width; c++) sb.append(c % 5 == 0 ? 17 : 0).append(',');
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.loreJourney.main.desktop;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.GL20;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.Buffer;
+import java.nio.IntBuffer;
+
+/**
+ * A GL20 that does nothing except count draw calls and the quads drawn from
+ * client memory so the benchmarks can run rendering code on the headless backend
+ *
+ * Without GL30 the SpriteBatch draws from vertex arrays that are sent with
+ * every draw call, while a SpriteCache draws from buffer objects filled when
+ * it is baked, so quads drawn with client side indices are the quads streamed
+ * to the GPU that frame.
+ *
+ * Shaders and programs report that they compiled and linked and
+ * FrameBuffers report that they are complete.
+ */
+public class StubGL implements InvocationHandler {
+
+    public int drawCalls;
+    public long streamedQuads;
+
+    /**
+     * Creates a stub and installs it as Gdx.gl
+     *
+     * @return
+     */
+    public static StubGL install() {
+        StubGL stub = new StubGL();
+        Gdx.gl = Gdx.gl20 = (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[] { GL20.class }, stub);
+        return stub;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if (name.startsWith("glDraw")) drawCalls++;
+        if (name.equals("glDrawElements") && args[3] instanceof Buffer) streamedQuads += (Integer) args[1] / 6;
+        if (name.equals("glCheckFramebufferStatus")) return GL20.GL_FRAMEBUFFER_COMPLETE;
+        if (name.equals("glGetShaderiv") || name.equals("glGetProgramiv")) {
+            IntBuffer params = (IntBuffer) args[2];
+            // no active attributes or uniforms, everything else succeeded
+            boolean count = name.equals("glGetProgramiv") && (Integer) args[1] != GL20.GL_LINK_STATUS;
+            params.put(params.position(), count ? 0 : 1);
+        }
+        if (name.equals("glGetIntegerv")) {
+            IntBuffer params = (IntBuffer) args[1];
+            params.put(params.position(), 1);
+        }
+
+        Class<?> type = method.getReturnType();
+        if (type == int.class) return 1;
+        if (type == boolean.class) return false;
+        if (type == float.class) return 0f;
+        if (type == String.class) return "";
+        return null;
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.loreJourney.tools;
+
+import com.loreJourney.map.MapFormat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Compiles every text map "w[world index]_l[level index].txt" in a directory
+ * into the binary map format loaded by TileMap
+ *
+ * Usage: MapConverter [maps directory]
+ */
+public class MapConverter {
+
+	public static void main(String[] args) throws IOException {
+        File dir = new File(args.length > 0 ? args[0] : "maps");
+        File[] maps = dir.listFiles();
+        if (maps == null) {
+            System.err.println("Not a directory: " + dir.getPath());
+            System.exit(1);
+        }
+
+        for (File map : maps) {
+            String name = map.getName();
+            if (!name.matches("w\\d+_l\\d+\\.txt")) continue;
+
+            byte[] compiled = MapFormat.compile(Files.readAllBytes(map.toPath()));
+
+            File out = new File(dir, name.substring(0, name.length() - 4) + MapFormat.EXTENSION);
+            Files.write(out.toPath(), compiled);
+            System.out.println(name + " -> " + out.getName() + " (" + compiled.length + " bytes)");
+        }
+    }
+
+}